@@ -0,0 +1,93 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.benchmarks;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.InMemoryHealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.JobPhases;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.JobTimelines;
+import java.time.Clock;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of estimating the completion time of every running job of a
+ * workflow from the in-memory timelines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JobPhasesBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int jobs;
+    private List<Job> runningJobs;
+    private JobTimelines timelines;
+    private Clock clock;
+
+    @Setup
+    public void setUp() {
+
+        InMemoryHealingDAO dao = new InMemoryHealingDAO();
+        timelines = new JobTimelines();
+        Workloads.running(dao, timelines, jobs, System.currentTimeMillis(), new Random(42));
+        runningJobs = dao.getJobs();
+        clock = Clock.systemUTC();
+    }
+
+    @Benchmark
+    public void estimate(Blackhole blackhole) {
+
+        for (Job job : runningJobs) {
+            JobPhases phases = new JobPhases(job, timelines.get(job.getId()), clock,
+                    Workloads.SETUP, Workloads.INPUT, Workloads.EXECUTION, Workloads.OUTPUT);
+            blackhole.consume(phases.getEstimation());
+        }
+    }
+}
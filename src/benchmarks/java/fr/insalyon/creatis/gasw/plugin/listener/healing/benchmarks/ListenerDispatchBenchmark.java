@@ -0,0 +1,137 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.benchmarks;
+
+import fr.insalyon.creatis.gasw.GaswException;
+import fr.insalyon.creatis.gasw.GaswExitCode;
+import fr.insalyon.creatis.gasw.GaswOutput;
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.bean.JobMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.HealingListener;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.InMemoryHealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.ExecutorHealingScheduler;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.HealingContext;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.HealingScheduler;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the listener callbacks on the GASW notification threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ListenerDispatchBenchmark {
+
+    private static final GaswMinorStatus[] STATUSES = {GaswMinorStatus.Started, GaswMinorStatus.Inputs,
+        GaswMinorStatus.Application, GaswMinorStatus.Outputs, GaswMinorStatus.Finished};
+    @Param({"1000", "10000", "100000"})
+    private int jobs;
+    private HealingScheduler scheduler;
+    private HealingListener listener;
+    private JobMinorStatus[] minorStatuses;
+    private GaswOutput[] outputs;
+
+    @Setup
+    public void setUp() throws GaswException {
+
+        Workloads.configure();
+        scheduler = new ExecutorHealingScheduler(1, false);
+        listener = new HealingListener(HealingContext.builder()
+                .scheduler(scheduler).dao(new InMemoryHealingDAO()).build());
+        listener.load();
+
+        long now = System.currentTimeMillis();
+        minorStatuses = new JobMinorStatus[jobs * STATUSES.length];
+        outputs = new GaswOutput[jobs];
+        for (int i = 0; i < jobs; i++) {
+            Job job = Workloads.job("job" + i, i, GaswStatus.RUNNING);
+            listener.jobSubmitted(job);
+            for (int s = 0; s < STATUSES.length; s++) {
+                minorStatuses[i * STATUSES.length + s] = new JobMinorStatus(job, STATUSES[s], new Date(now + s * 1000));
+            }
+            outputs[i] = new GaswOutput(job.getFileName() + ".jdl", GaswExitCode.SUCCESS, "",
+                    null, null, null, null, null);
+        }
+    }
+
+    @Benchmark
+    public void minorStatusReported(Cursor cursor) throws GaswException {
+        listener.jobMinorStatusReported(minorStatuses[Math.floorMod(cursor.next++, minorStatuses.length)]);
+    }
+
+    @Benchmark
+    public void jobFinished(Cursor cursor) throws GaswException {
+        listener.jobFinished(outputs[Math.floorMod(cursor.next++, outputs.length)]);
+    }
+
+    @TearDown
+    public void tearDown() throws GaswException {
+        listener.terminate();
+    }
+
+    /**
+     * Position of each benchmark thread in the events, starting at a random
+     * offset so that the threads do not replay the same jobs.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        @Setup
+        public void setUp() {
+            next = ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.benchmarks;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.execution.GaswMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.HealingConfiguration;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.HealingConstants;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.InMemoryHealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.CommandState;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.JobTimelines;
+import java.util.Random;
+import org.apache.commons.configuration.PropertiesConfiguration;
+
+/**
+ * Synthetic workflows shared by the benchmarks.
+ */
+final class Workloads {
+
+    static final String COMMAND = "benchmark";
+    static final long SETUP = 30000;
+    static final long INPUT = 120000;
+    static final long EXECUTION = 3600000;
+    static final long OUTPUT = 60000;
+    private static final GaswMinorStatus[] PHASES = {GaswMinorStatus.Started,
+        GaswMinorStatus.Inputs, GaswMinorStatus.Application, GaswMinorStatus.Outputs};
+
+    private Workloads() {
+    }
+
+    /**
+     * Configures the healing without GASW, with cycles that never run on
+     * their own: the benchmarks call them explicitly.
+     */
+    static void configure() {
+        configure(1);
+    }
+
+    /**
+     * @param evaluationParallelism number of workers evaluating the
+     * invocations of a cycle
+     */
+    static void configure(int evaluationParallelism) {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        config.setProperty(HealingConstants.LAB_SLEEP_TIME, 86400);
+        config.setProperty(HealingConstants.LAB_EVALUATION_PARALLELISM, evaluationParallelism);
+        HealingConfiguration.initialize(config, 3);
+    }
+
+    static Job job(String id, int invocationID, GaswStatus status) {
+
+        Job job = new Job();
+        job.setId(id);
+        job.setCommand(COMMAND);
+        job.setInvocationID(invocationID);
+        job.setFileName(COMMAND + "-" + id);
+        job.setStatus(status);
+        return job;
+    }
+
+    /**
+     * Fills the DAO with running jobs, one invocation out of four having a
+     * second replica. The jobs are spread over all the phases and about one
+     * out of ten is a straggler.
+     *
+     * @param dao
+     * @param timelines
+     * @param jobs
+     * @param now
+     * @param random
+     */
+    static void running(InMemoryHealingDAO dao, JobTimelines timelines,
+            int jobs, long now, Random random) {
+
+        int invocationID = 0;
+        for (int i = 0; i < jobs; i++) {
+            if (i % 5 != 4) {
+                invocationID++;
+            }
+            Job job = job("job" + i, invocationID, GaswStatus.RUNNING);
+            dao.add(job);
+
+            long slowdown = random.nextInt(10) == 0 ? 5 : 1;
+            long[] durations = {SETUP * slowdown, INPUT * slowdown, EXECUTION * slowdown, OUTPUT * slowdown};
+            int phase = random.nextInt(PHASES.length);
+            long time = now - (long) (random.nextDouble() * durations[phase]);
+            for (int p = phase - 1; p >= 0; p--) {
+                time -= durations[p];
+            }
+            for (int p = 0; p <= phase; p++) {
+                timelines.record(job.getId(), PHASES[p], time);
+                time += durations[p];
+            }
+        }
+    }
+
+    /**
+     * Feeds the phase statistics of a command with samples around the
+     * reference durations.
+     *
+     * @param cs
+     * @param samples
+     * @param random
+     */
+    static void statistics(CommandState cs, int samples, Random random) {
+
+        for (int i = 0; i < samples; i++) {
+            cs.addSetupTime(null, sample(SETUP, random));
+            cs.addDownloadTime(null, sample(INPUT, random));
+            cs.addExecutionTime(null, sample(EXECUTION, random));
+            cs.addUploadTime(null, sample(OUTPUT, random));
+        }
+    }
+
+    static long sample(long median, Random random) {
+        return (long) (median * Math.exp(0.5 * random.nextGaussian()));
+    }
+}
@@ -0,0 +1,467 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.simulation;
+
+import fr.insalyon.creatis.gasw.GaswException;
+import fr.insalyon.creatis.gasw.GaswExitCode;
+import fr.insalyon.creatis.gasw.GaswOutput;
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.bean.JobMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.HealingConfiguration;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.HealingListener;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.InMemoryHealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.HealingContext;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.JobNotifier;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.JobTimelines;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.metrics.MetricsRegistry;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Event-driven simulation of a grid running one command, driving the
+ * HealingListener end to end on a virtual clock with an in-memory database.
+ * The simulator plays the part of GASW: it submits the jobs, reports their
+ * status changes and minor statuses, applies the decisions taken by the
+ * healing (replications and kills) and resubmits failed jobs.
+ */
+public class GridSimulator {
+
+    private static final Logger logger = LoggerFactory.getLogger(GridSimulator.class);
+    private static final long START_TIME = 1600000000000L;
+    private static final GaswMinorStatus[] PHASE_ENDS = {
+        GaswMinorStatus.Inputs, GaswMinorStatus.Application,
+        GaswMinorStatus.Outputs, GaswMinorStatus.Finished};
+
+    private final WorkloadSpec spec;
+    private final JobModel model;
+    private final VirtualClock clock;
+    private final VirtualScheduler scheduler;
+    private final InMemoryHealingDAO dao;
+    private final HealingListener listener;
+    private final Random random;
+    private final PriorityQueue<Event> events;
+    private final Map<String, SimulatedJob> liveJobs;
+    private final Map<Integer, Set<SimulatedJob>> liveJobsByInvocation;
+    private final Map<String, SimulatedJob> jobsByFileName;
+    private final Queue<GaswOutput> notifications;
+    private final int[] attempts;
+    private final int[] submissions;
+    private final boolean[] ended;
+    private long eventSequence;
+    private int jobSequence;
+    private int completedInvocations;
+    private int failedInvocations;
+    private int replicas;
+    private int killedReplicas;
+    private int killedJobs;
+    private long lastEnd;
+    private long cpuTime;
+
+    /**
+     * @param spec workload to simulate
+     * @param config healing properties, read with the retry count of the
+     * workload
+     */
+    public GridSimulator(WorkloadSpec spec, PropertiesConfiguration config) {
+        this(spec, new SampledJobModel(spec), config);
+    }
+
+    /**
+     * The configuration is private to the simulation, so that simulations
+     * can run in parallel.
+     *
+     * @param spec workload to simulate; only the command, number of
+     * invocations, retry count, held time, maximum time and seed are used
+     * @param model source of the invocations and jobs
+     * @param config healing properties, read with the retry count of the
+     * workload
+     */
+    public GridSimulator(WorkloadSpec spec, JobModel model, PropertiesConfiguration config) {
+
+        this.spec = spec;
+        this.model = model;
+        this.clock = new VirtualClock(START_TIME);
+        this.scheduler = new VirtualScheduler(clock, spec.getSeed());
+        this.dao = new InMemoryHealingDAO();
+        this.random = new Random(spec.getSeed());
+        this.events = new PriorityQueue<>();
+        this.liveJobs = new LinkedHashMap<>();
+        this.liveJobsByInvocation = new HashMap<>();
+        this.jobsByFileName = new HashMap<>();
+        this.notifications = new ConcurrentLinkedQueue<>();
+        this.attempts = new int[spec.getInvocations()];
+        this.submissions = new int[spec.getInvocations()];
+        this.ended = new boolean[spec.getInvocations()];
+        this.lastEnd = START_TIME;
+
+        this.listener = new HealingListener(HealingContext.builder()
+                .configuration(HealingConfiguration.create(config, spec.getRetryCount()))
+                .scheduler(scheduler)
+                .timelines(new JobTimelines())
+                .dao(dao)
+                .notifier(new SimulatedNotifier())
+                .clock(clock)
+                .metrics(MetricsRegistry.NONE)
+                .build());
+    }
+
+    /**
+     * Runs the simulation until all invocations ended or the maximum
+     * simulated time is reached.
+     *
+     * @return
+     * @throws GaswException
+     */
+    public SimulationReport run() throws GaswException {
+
+        listener.load();
+        for (int i = 0; i < spec.getInvocations(); i++) {
+            int invocation = i;
+            schedule(START_TIME + model.getArrivalTime(i), () -> submit(invocation));
+        }
+
+        long end = START_TIME + spec.getMaxTime();
+        while (completedInvocations + failedInvocations < spec.getInvocations()) {
+            long eventTime = events.isEmpty() ? Long.MAX_VALUE : events.peek().time;
+            long cycleTime = scheduler.nextTime();
+            if (Math.min(eventTime, cycleTime) > end) {
+                break;
+            }
+            if (eventTime <= cycleTime) {
+                Event event = events.poll();
+                clock.advanceTo(event.time);
+                event.action.run();
+            } else {
+                scheduler.runNext();
+                applyDecisions();
+            }
+            processNotifications();
+        }
+        listener.terminate();
+
+        SimulationReport report = new SimulationReport(lastEnd - START_TIME,
+                completedInvocations, failedInvocations, jobSequence, replicas,
+                killedReplicas, killedJobs, scheduler.getExecutedTasks(), dao.getCalls(), cpuTime);
+        logger.info("Simulation of {} ended: {}", spec.getCommand(), report);
+        return report;
+    }
+
+    private void submit(int invocation) throws GaswException {
+
+        attempts[invocation]++;
+        submitJob(invocation);
+    }
+
+    private void submitJob(int invocation) throws GaswException {
+
+        jobSequence++;
+        Job job = new Job();
+        job.setId(spec.getCommand() + "-" + jobSequence);
+        job.setFileName(spec.getCommand() + "-" + jobSequence);
+        job.setCommand(spec.getCommand());
+        job.setInvocationID(invocation);
+        job.setStatus(GaswStatus.SUCCESSFULLY_SUBMITTED);
+
+        SimulatedJob simulatedJob = new SimulatedJob(job, invocation,
+                model.nextJob(invocation, submissions[invocation]++, random));
+        liveJobs.put(job.getId(), simulatedJob);
+        liveJobsByInvocation.computeIfAbsent(invocation, i -> new LinkedHashSet<>()).add(simulatedJob);
+        jobsByFileName.put(job.getFileName(), simulatedJob);
+
+        dao.add(job);
+        listener.jobSubmitted(job);
+        listener.jobStatusChanged(job);
+        schedule(clock.millis() + simulatedJob.durations[0], () -> start(simulatedJob));
+    }
+
+    private void start(SimulatedJob simulatedJob) throws GaswException {
+
+        if (!simulatedJob.alive) {
+            return;
+        }
+        simulatedJob.startTime = clock.millis();
+        setStatus(simulatedJob, GaswStatus.RUNNING);
+        reportMinorStatus(simulatedJob, GaswMinorStatus.Started);
+        schedule(clock.millis() + simulatedJob.durations[1], () -> endPhase(simulatedJob, 0));
+    }
+
+    private void endPhase(SimulatedJob simulatedJob, int phase) throws GaswException {
+
+        if (!simulatedJob.alive) {
+            return;
+        }
+        if (simulatedJob.failurePhase == phase) {
+            fail(simulatedJob);
+            return;
+        }
+        reportMinorStatus(simulatedJob, PHASE_ENDS[phase]);
+        if (phase == PHASE_ENDS.length - 1) {
+            complete(simulatedJob);
+        } else {
+            schedule(clock.millis() + simulatedJob.durations[phase + 2], () -> endPhase(simulatedJob, phase + 1));
+        }
+    }
+
+    private void complete(SimulatedJob simulatedJob) throws GaswException {
+
+        end(simulatedJob, GaswStatus.COMPLETED);
+        listener.jobFinished(output(simulatedJob, GaswExitCode.SUCCESS));
+
+        int invocation = simulatedJob.invocation;
+        if (!ended[invocation]) {
+            endInvocation(invocation, false);
+        }
+        for (SimulatedJob replica : new ArrayList<>(liveJobsByInvocation.getOrDefault(invocation, Set.of()))) {
+            end(replica, GaswStatus.CANCELLED_REPLICA);
+            listener.jobFinished(output(replica, GaswExitCode.EXECUTION_CANCELED));
+        }
+    }
+
+    private void fail(SimulatedJob simulatedJob) throws GaswException {
+
+        if (simulatedJob.held) {
+            end(simulatedJob, GaswStatus.ERROR_HELD);
+            schedule(clock.millis() + spec.getHeldTime(), () -> releaseHeld(simulatedJob));
+        } else {
+            end(simulatedJob, GaswStatus.ERROR);
+            listener.jobFinished(output(simulatedJob, GaswExitCode.EXECUTION_FAILED));
+            retry(simulatedJob.invocation);
+        }
+    }
+
+    private void releaseHeld(SimulatedJob simulatedJob) throws GaswException {
+
+        Job job = simulatedJob.job;
+        if (job.getStatus() == GaswStatus.ERROR_HELD) {
+            job.setStatus(GaswStatus.ERROR);
+            listener.jobStatusChanged(job);
+            listener.jobFinished(output(simulatedJob, GaswExitCode.EXECUTION_FAILED));
+            retry(simulatedJob.invocation);
+        }
+    }
+
+    /**
+     * Resubmits an invocation which has no running job left, as GASW does up
+     * to the retry count.
+     */
+    private void retry(int invocation) throws GaswException {
+
+        if (ended[invocation] || !liveJobsByInvocation.getOrDefault(invocation, Set.of()).isEmpty()) {
+            return;
+        }
+        if (attempts[invocation] < spec.getRetryCount()) {
+            submit(invocation);
+        } else {
+            endInvocation(invocation, true);
+        }
+    }
+
+    /**
+     * Applies the statuses set by the last healing cycle.
+     */
+    private void applyDecisions() throws GaswException {
+
+        for (SimulatedJob simulatedJob : new ArrayList<>(liveJobs.values())) {
+            Job job = simulatedJob.job;
+            switch (job.getStatus()) {
+                case REPLICATE:
+                    logger.debug("Replicating job {}", job.getId());
+                    job.setStatus(simulatedJob.status);
+                    job.setReplicating(false);
+                    replicas++;
+                    submitJob(simulatedJob.invocation);
+                    break;
+
+                case KILL_REPLICA:
+                case KILL:
+                    boolean replica = job.getStatus() == GaswStatus.KILL_REPLICA && !job.isBeingKilled();
+                    end(simulatedJob, GaswStatus.CANCELLED);
+                    listener.jobFinished(output(simulatedJob, GaswExitCode.EXECUTION_CANCELED));
+                    if (replica) {
+                        logger.debug("Killed replica {}", job.getId());
+                        killedReplicas++;
+                        retry(simulatedJob.invocation);
+                    } else {
+                        logger.debug("Killed job {}", job.getId());
+                        killedJobs++;
+                        if (!ended[simulatedJob.invocation]) {
+                            endInvocation(simulatedJob.invocation, true);
+                        }
+                    }
+                    break;
+
+                default:
+            }
+        }
+    }
+
+    /**
+     * Handles the held jobs released by the healing.
+     */
+    private void processNotifications() throws GaswException {
+
+        GaswOutput gaswOutput;
+        while ((gaswOutput = notifications.poll()) != null) {
+            String fileName = gaswOutput.getJobID().substring(0, gaswOutput.getJobID().length() - 4);
+            SimulatedJob simulatedJob = jobsByFileName.get(fileName);
+            if (simulatedJob != null) {
+                listener.jobStatusChanged(simulatedJob.job);
+                listener.jobFinished(gaswOutput);
+                if (!ended[simulatedJob.invocation]) {
+                    endInvocation(simulatedJob.invocation, true);
+                }
+            }
+        }
+    }
+
+    private void endInvocation(int invocation, boolean failed) {
+
+        ended[invocation] = true;
+        lastEnd = clock.millis();
+        if (failed) {
+            failedInvocations++;
+        } else {
+            completedInvocations++;
+        }
+    }
+
+    private void setStatus(SimulatedJob simulatedJob, GaswStatus status) throws GaswException {
+
+        simulatedJob.status = status;
+        simulatedJob.job.setStatus(status);
+        listener.jobStatusChanged(simulatedJob.job);
+    }
+
+    private void end(SimulatedJob simulatedJob, GaswStatus status) throws GaswException {
+
+        simulatedJob.alive = false;
+        if (simulatedJob.startTime > 0) {
+            cpuTime += clock.millis() - simulatedJob.startTime;
+        }
+        liveJobs.remove(simulatedJob.job.getId());
+        liveJobsByInvocation.get(simulatedJob.invocation).remove(simulatedJob);
+        setStatus(simulatedJob, status);
+    }
+
+    private void reportMinorStatus(SimulatedJob simulatedJob, GaswMinorStatus status) throws GaswException {
+
+        dao.addMinorStatus(simulatedJob.job, status, clock.millis());
+        listener.jobMinorStatusReported(new JobMinorStatus(simulatedJob.job, status, new Date(clock.millis())));
+    }
+
+    private GaswOutput output(SimulatedJob simulatedJob, GaswExitCode exitCode) {
+        return new GaswOutput(simulatedJob.job.getFileName() + ".jdl", exitCode, null,
+                null, null, null, null, null);
+    }
+
+    private void schedule(long time, SimulationAction action) {
+        events.add(new Event(time, eventSequence++, action));
+    }
+
+    private interface SimulationAction {
+
+        void run() throws GaswException;
+    }
+
+    private static class Event implements Comparable<Event> {
+
+        private final long time;
+        private final long order;
+        private final SimulationAction action;
+
+        Event(long time, long order, SimulationAction action) {
+
+            this.time = time;
+            this.order = order;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+
+            int result = Long.compare(time, other.time);
+            return result != 0 ? result : Long.compare(order, other.order);
+        }
+    }
+
+    private class SimulatedJob {
+
+        private final Job job;
+        private final int invocation;
+        // queue, setup, inputs, execution and outputs durations
+        private final long[] durations;
+        private final int failurePhase;
+        private final boolean held;
+        private GaswStatus status;
+        private boolean alive;
+        private long startTime;
+
+        SimulatedJob(Job job, int invocation, JobProfile profile) {
+
+            this.job = job;
+            this.invocation = invocation;
+            this.status = job.getStatus();
+            this.alive = true;
+            this.durations = profile.getDurations();
+            this.failurePhase = profile.getFailurePhase();
+            this.held = profile.isHeld();
+        }
+    }
+
+    private class SimulatedNotifier implements JobNotifier {
+
+        @Override
+        public GaswOutput getOutputFromLastFailedJob(String jobID) {
+            return null;
+        }
+
+        @Override
+        public void addFinishedJob(GaswOutput gaswOutput) {
+            notifications.add(gaswOutput);
+        }
+    }
+}
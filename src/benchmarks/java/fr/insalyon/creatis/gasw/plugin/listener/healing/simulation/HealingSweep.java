@@ -0,0 +1,252 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.simulation;
+
+import fr.insalyon.creatis.gasw.plugin.listener.healing.HealingConstants;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.configuration.PropertiesConfiguration;
+
+/**
+ * Command-line tool replaying a trace of a past run under every combination
+ * of the given healing parameters, to compare their predicted makespan and
+ * replica cost before changing the production configuration.
+ *
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:java \
+ *     -Dexec.mainClass=fr.insalyon.creatis.gasw.plugin.listener.healing.simulation.HealingSweep \
+ *     -Dexec.args="--jobs jobs.csv --minor-statuses minor_statuses.csv
+ *     --param plugin.healing.blocked.coefficient=1.5,2,3
+ *     --param plugin.healing.max.replicas=2,3"
+ * </pre>
+ *
+ * Other options: --command (to select a command of the trace), --config (base
+ * healing properties), --retry-count (default 3), --seed (default 1) and
+ * --threads (default: number of cores). The simulations run in parallel,
+ * each on its own virtual clock; the journal and statistics store are
+ * disabled so that they do not share files.
+ */
+public class HealingSweep {
+
+    private final TraceJobModel trace;
+    private final PropertiesConfiguration baseConfig;
+    private final Map<String, String[]> params;
+    private final String command;
+    private final int retryCount;
+    private final long seed;
+
+    public HealingSweep(TraceJobModel trace, PropertiesConfiguration baseConfig,
+            Map<String, String[]> params, String command, int retryCount, long seed) {
+
+        this.trace = trace;
+        this.baseConfig = baseConfig;
+        this.params = params;
+        this.command = command;
+        this.retryCount = retryCount;
+        this.seed = seed;
+    }
+
+    /**
+     * @return every combination of the parameter values, in the order of the
+     * parameters
+     */
+    public List<Map<String, String>> getParameterSets() {
+
+        List<Map<String, String>> sets = new ArrayList<>();
+        sets.add(new LinkedHashMap<>());
+        for (Map.Entry<String, String[]> param : params.entrySet()) {
+            List<Map<String, String>> expanded = new ArrayList<>();
+            for (Map<String, String> set : sets) {
+                for (String value : param.getValue()) {
+                    Map<String, String> copy = new LinkedHashMap<>(set);
+                    copy.put(param.getKey(), value);
+                    expanded.add(copy);
+                }
+            }
+            sets = expanded;
+        }
+        return sets;
+    }
+
+    /**
+     * Runs the simulation of a parameter set.
+     *
+     * @param parameters
+     * @return
+     * @throws Exception
+     */
+    public SimulationReport simulate(Map<String, String> parameters) throws Exception {
+
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        for (Iterator<String> keys = baseConfig.getKeys(); keys.hasNext();) {
+            String key = keys.next();
+            config.setProperty(key, baseConfig.getProperty(key));
+        }
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            config.setProperty(parameter.getKey(), parameter.getValue());
+        }
+        config.setProperty(HealingConstants.LAB_JOURNAL, "");
+        config.setProperty(HealingConstants.LAB_STATS_STORE, "");
+
+        WorkloadSpec spec = new WorkloadSpec();
+        spec.setCommand(command);
+        spec.setInvocations(trace.getInvocations());
+        spec.setRetryCount(retryCount);
+        spec.setSeed(seed);
+        spec.setMaxTime(Math.max(spec.getMaxTime(), 10 * trace.getObservedMakespan()));
+        return new GridSimulator(spec, trace, config).run();
+    }
+
+    /**
+     * Simulates all the parameter sets on the given number of threads.
+     *
+     * @param threads
+     * @return the reports, in the order of {@link #getParameterSets()}
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public List<SimulationReport> run(int threads) throws InterruptedException, ExecutionException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<SimulationReport>> futures = new ArrayList<>();
+            for (Map<String, String> parameters : getParameterSets()) {
+                futures.add(executor.submit(() -> simulate(parameters)));
+            }
+            List<SimulationReport> reports = new ArrayList<>();
+            for (Future<SimulationReport> future : futures) {
+                reports.add(future.get());
+            }
+            return reports;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        String jobs = null;
+        String minorStatuses = null;
+        String command = null;
+        String configFile = null;
+        int retryCount = 3;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Map<String, String[]> params = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            if (value == null) {
+                usage("Missing value of " + args[i]);
+            }
+            switch (args[i++]) {
+                case "--jobs":
+                    jobs = value;
+                    break;
+                case "--minor-statuses":
+                    minorStatuses = value;
+                    break;
+                case "--command":
+                    command = value;
+                    break;
+                case "--config":
+                    configFile = value;
+                    break;
+                case "--retry-count":
+                    retryCount = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--param":
+                    int equals = value.indexOf('=');
+                    if (equals <= 0) {
+                        usage("Invalid parameter " + value);
+                    }
+                    params.put(value.substring(0, equals), value.substring(equals + 1).split(","));
+                    break;
+                default:
+                    usage("Unknown option " + args[i - 1]);
+            }
+        }
+        if (jobs == null || minorStatuses == null) {
+            usage("The jobs and minor statuses files are required");
+        }
+
+        TraceJobModel trace = TraceJobModel.load(Paths.get(jobs), Paths.get(minorStatuses), command);
+        PropertiesConfiguration baseConfig = configFile == null
+                ? new PropertiesConfiguration() : new PropertiesConfiguration(configFile);
+        HealingSweep sweep = new HealingSweep(trace, baseConfig, params,
+                command == null ? "replayed" : command, retryCount, seed);
+
+        System.out.printf("trace: invocations=%d jobs=%d makespan=%ds%n",
+                trace.getInvocations(), trace.getObservedJobs(), trace.getObservedMakespan() / 1000);
+        StringBuilder header = new StringBuilder();
+        for (String key : params.keySet()) {
+            header.append(key).append('\t');
+        }
+        System.out.println(header.append("makespan(s)\tcompleted\tfailed\tjobs\treplicas\tkilledReplicas\tcpu(h)"));
+        List<Map<String, String>> sets = sweep.getParameterSets();
+        List<SimulationReport> reports = sweep.run(threads);
+        for (int i = 0; i < sets.size(); i++) {
+            SimulationReport report = reports.get(i);
+            StringBuilder row = new StringBuilder();
+            for (String value : sets.get(i).values()) {
+                row.append(value).append('\t');
+            }
+            System.out.println(row.append(String.format("%d\t%d\t%d\t%d\t%d\t%d\t%.1f",
+                    report.getMakespan() / 1000, report.getCompletedInvocations(),
+                    report.getFailedInvocations(), report.getSubmittedJobs(), report.getReplicas(),
+                    report.getKilledReplicas(), report.getCpuTime() / 3600000.0)));
+        }
+    }
+
+    private static void usage(String error) {
+
+        System.err.println(error);
+        System.err.println("Usage: HealingSweep --jobs <jobs.csv> --minor-statuses <minor_statuses.csv>"
+                + " [--command <command>] [--config <healing.properties>] [--retry-count <n>]"
+                + " [--seed <n>] [--threads <n>] [--param <key>=<value>,<value>...]...");
+        System.exit(1);
+    }
+}
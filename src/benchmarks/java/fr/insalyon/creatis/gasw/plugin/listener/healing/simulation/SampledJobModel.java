@@ -0,0 +1,73 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.simulation;
+
+import java.util.Random;
+
+/**
+ * Jobs drawn from the distributions of a workload specification.
+ */
+class SampledJobModel implements JobModel {
+
+    private final WorkloadSpec spec;
+
+    SampledJobModel(WorkloadSpec spec) {
+        this.spec = spec;
+    }
+
+    @Override
+    public long getArrivalTime(int invocation) {
+        return invocation * spec.getInterArrivalTime();
+    }
+
+    @Override
+    public JobProfile nextJob(int invocation, int submission, Random random) {
+
+        long[] durations = {
+            sample(spec.getQueueMedian(), random), sample(spec.getSetupMedian(), random),
+            sample(spec.getInputMedian(), random), sample(spec.getExecutionMedian(), random),
+            sample(spec.getOutputMedian(), random)};
+        if (random.nextDouble() < spec.getStragglerProbability()) {
+            int phase = 1 + random.nextInt(4);
+            durations[phase] = Math.round(durations[phase] * spec.getStragglerSlowdown());
+        }
+        if (random.nextDouble() < spec.getFailureProbability()) {
+            return new JobProfile(durations, random.nextInt(4), random.nextDouble() < spec.getHeldProbability());
+        }
+        return new JobProfile(durations, -1, false);
+    }
+
+    private long sample(long median, Random random) {
+        return Math.max(1, Math.round(median * Math.exp(spec.getSigma() * random.nextGaussian())));
+    }
+}
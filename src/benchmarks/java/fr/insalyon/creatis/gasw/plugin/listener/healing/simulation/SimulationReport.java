@@ -0,0 +1,126 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.simulation;
+
+/**
+ * Outcome of a simulation run.
+ */
+public class SimulationReport {
+
+    private final long makespan;
+    private final int completedInvocations;
+    private final int failedInvocations;
+    private final int submittedJobs;
+    private final int replicas;
+    private final int killedReplicas;
+    private final int killedJobs;
+    private final long cycles;
+    private final long daoCalls;
+    private final long cpuTime;
+
+    public SimulationReport(long makespan, int completedInvocations, int failedInvocations,
+            int submittedJobs, int replicas, int killedReplicas, int killedJobs,
+            long cycles, long daoCalls, long cpuTime) {
+
+        this.makespan = makespan;
+        this.completedInvocations = completedInvocations;
+        this.failedInvocations = failedInvocations;
+        this.submittedJobs = submittedJobs;
+        this.replicas = replicas;
+        this.killedReplicas = killedReplicas;
+        this.killedJobs = killedJobs;
+        this.cycles = cycles;
+        this.daoCalls = daoCalls;
+        this.cpuTime = cpuTime;
+    }
+
+    /**
+     * @return time between the first submission and the end of the last
+     * invocation, in milliseconds
+     */
+    public long getMakespan() {
+        return makespan;
+    }
+
+    public int getCompletedInvocations() {
+        return completedInvocations;
+    }
+
+    public int getFailedInvocations() {
+        return failedInvocations;
+    }
+
+    public int getSubmittedJobs() {
+        return submittedJobs;
+    }
+
+    public int getReplicas() {
+        return replicas;
+    }
+
+    public int getKilledReplicas() {
+        return killedReplicas;
+    }
+
+    public int getKilledJobs() {
+        return killedJobs;
+    }
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    public long getDAOCalls() {
+        return daoCalls;
+    }
+
+    /**
+     * @return total running time of the jobs, in milliseconds, which
+     * includes the cost of the replicas
+     */
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    public double getDAOCallsPerCycle() {
+        return cycles == 0 ? 0 : (double) daoCalls / cycles;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("makespan=%ds completed=%d failed=%d jobs=%d replicas=%d "
+                + "killedReplicas=%d killedJobs=%d cpu=%dh cycles=%d daoCalls/cycle=%.1f",
+                makespan / 1000, completedInvocations, failedInvocations, submittedJobs,
+                replicas, killedReplicas, killedJobs, cpuTime / 3600000, cycles, getDAOCallsPerCycle());
+    }
+}
@@ -0,0 +1,406 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.simulation;
+
+import fr.insalyon.creatis.gasw.execution.GaswMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Jobs replayed from a trace of a past run of a command, exported as CSV
+ * dumps of the GASW job and minor status tables.
+ *
+ * The jobs file needs the id, invocation_id, status and creation columns,
+ * and may have command and end_e (or end) columns. The minor statuses file
+ * needs the job_id, minor_status (name or code) and event_date columns.
+ * Dates are either epoch milliseconds or "yyyy-MM-dd HH:mm:ss[.SSS]" in
+ * UTC.
+ *
+ * The n-th job submitted for an invocation replays the n-th recorded job of
+ * the invocation. The recorded job durations only depend on the grid, but
+ * the number of jobs depends on the healing decisions of the run, so the
+ * jobs submitted beyond the recorded ones are drawn from the complete jobs
+ * of the trace. The phases that a cancelled or still running job did not
+ * reach are drawn the same way.
+ */
+public class TraceJobModel implements JobModel {
+
+    private static final DateTimeFormatter DATE_FORMAT = new DateTimeFormatterBuilder()
+            .appendPattern("yyyy-MM-dd")
+            .optionalStart().appendLiteral('T').optionalEnd()
+            .optionalStart().appendLiteral(' ').optionalEnd()
+            .appendPattern("HH:mm:ss")
+            .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+            .toFormatter(Locale.ROOT);
+    // minor statuses ending the queue, setup, inputs, execution and outputs
+    private static final GaswMinorStatus[] PHASE_ENDS = {
+        GaswMinorStatus.Started, GaswMinorStatus.Inputs, GaswMinorStatus.Application,
+        GaswMinorStatus.Outputs, GaswMinorStatus.Finished};
+
+    private final long[] arrivalTimes;
+    private final List<List<RecordedJob>> invocations;
+    private final List<RecordedJob> completeJobs;
+    private final long observedMakespan;
+    private final int observedJobs;
+
+    private TraceJobModel(long[] arrivalTimes, List<List<RecordedJob>> invocations,
+            List<RecordedJob> completeJobs, long observedMakespan, int observedJobs) {
+
+        this.arrivalTimes = arrivalTimes;
+        this.invocations = invocations;
+        this.completeJobs = completeJobs;
+        this.observedMakespan = observedMakespan;
+        this.observedJobs = observedJobs;
+    }
+
+    /**
+     * @param jobsFile CSV dump of the job table
+     * @param minorStatusesFile CSV dump of the minor status table
+     * @param command command to replay, or null if the trace only has one
+     * @return
+     * @throws IOException
+     * @throws IllegalArgumentException if a column is missing or the trace
+     * has no complete job
+     */
+    public static TraceJobModel load(Path jobsFile, Path minorStatusesFile, String command) throws IOException {
+
+        Map<String, RecordedJob> jobs = new HashMap<>();
+        Map<Integer, List<RecordedJob>> jobsByInvocation = new HashMap<>();
+        for (Map<String, String> row : readCsv(jobsFile, "id", "invocation_id", "status", "creation")) {
+            if (command != null && row.containsKey("command") && !command.equals(row.get("command"))) {
+                continue;
+            }
+            String end = row.containsKey("end_e") ? row.get("end_e") : row.get("end");
+            RecordedJob job = new RecordedJob(row.get("id"), parseStatus(row.get("status")),
+                    parseDate(row.get("creation")), end == null || end.isEmpty() ? 0 : parseDate(end));
+            jobs.put(row.get("id"), job);
+            jobsByInvocation.computeIfAbsent(Integer.parseInt(row.get("invocation_id")),
+                    i -> new ArrayList<>()).add(job);
+        }
+        for (Map<String, String> row : readCsv(minorStatusesFile, "job_id", "minor_status", "event_date")) {
+            RecordedJob job = jobs.get(row.get("job_id"));
+            GaswMinorStatus status = parseMinorStatus(row.get("minor_status"));
+            if (job != null && status != null) {
+                job.addMinorStatus(status, parseDate(row.get("event_date")));
+            }
+        }
+
+        List<RecordedJob> completeJobs = new ArrayList<>();
+        for (RecordedJob job : jobs.values()) {
+            job.resolve();
+            if (job.complete) {
+                completeJobs.add(job);
+            }
+        }
+        if (completeJobs.isEmpty()) {
+            throw new IllegalArgumentException("No completed or failed job with all its minor statuses in the trace");
+        }
+        // the jobs drawn must not depend on the hash order
+        completeJobs.sort(Comparator.comparingLong((RecordedJob job) -> job.creation)
+                .thenComparing(job -> job.id));
+
+        List<List<RecordedJob>> invocations = new ArrayList<>(jobsByInvocation.values());
+        for (List<RecordedJob> invocationJobs : invocations) {
+            invocationJobs.sort(Comparator.comparingLong((RecordedJob job) -> job.creation)
+                    .thenComparing(job -> job.id));
+        }
+        invocations.sort(Comparator.comparingLong(invocationJobs -> invocationJobs.get(0).creation));
+        long start = invocations.get(0).get(0).creation;
+        long end = start;
+        long[] arrivalTimes = new long[invocations.size()];
+        for (int i = 0; i < arrivalTimes.length; i++) {
+            arrivalTimes[i] = invocations.get(i).get(0).creation - start;
+            for (RecordedJob job : invocations.get(i)) {
+                end = Math.max(end, Math.max(job.end, job.lastEvent));
+            }
+        }
+        return new TraceJobModel(arrivalTimes, invocations, completeJobs, end - start, jobs.size());
+    }
+
+    public int getInvocations() {
+        return arrivalTimes.length;
+    }
+
+    /**
+     * @return time between the first submission and the last event of the
+     * trace, in milliseconds
+     */
+    public long getObservedMakespan() {
+        return observedMakespan;
+    }
+
+    public int getObservedJobs() {
+        return observedJobs;
+    }
+
+    @Override
+    public long getArrivalTime(int invocation) {
+        return arrivalTimes[invocation];
+    }
+
+    @Override
+    public JobProfile nextJob(int invocation, int submission, Random random) {
+
+        List<RecordedJob> recorded = invocations.get(invocation);
+        RecordedJob donor = completeJobs.get(random.nextInt(completeJobs.size()));
+        if (submission >= recorded.size()) {
+            return donor.toProfile();
+        }
+        RecordedJob job = recorded.get(submission);
+        if (job.complete) {
+            return job.toProfile();
+        }
+        // the unknown phases, and outcome if unknown, are taken from the donor
+        long[] durations = new long[PHASE_ENDS.length];
+        for (int i = 0; i < durations.length; i++) {
+            durations[i] = job.durations[i] >= 0 ? job.durations[i] : donor.durations[i];
+        }
+        if (job.failurePhase >= 0) {
+            return new JobProfile(durations, job.failurePhase, job.held);
+        }
+        int reached = job.getReachedPhases();
+        if (donor.failurePhase >= reached) {
+            return new JobProfile(durations, donor.failurePhase, donor.held);
+        }
+        return new JobProfile(durations, -1, false);
+    }
+
+    private static GaswStatus parseStatus(String value) {
+
+        try {
+            return GaswStatus.valueOf(value.trim());
+        } catch (IllegalArgumentException ex) {
+            return GaswStatus.UNDEFINED;
+        }
+    }
+
+    private static GaswMinorStatus parseMinorStatus(String value) {
+
+        String trimmed = value.trim();
+        for (GaswMinorStatus status : GaswMinorStatus.values()) {
+            if (status.name().equals(trimmed) || String.valueOf(status.getStatusCode()).equals(trimmed)) {
+                return status;
+            }
+        }
+        return null;
+    }
+
+    static long parseDate(String value) {
+
+        String trimmed = value.trim();
+        if (trimmed.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(trimmed);
+        }
+        return LocalDateTime.parse(trimmed, DATE_FORMAT).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Reads a CSV file with a header line. Fields may be quoted, with ""
+     * for a quote; the separator is the first of comma, semicolon or tab
+     * found in the header.
+     */
+    private static List<Map<String, String>> readCsv(Path file, String... requiredColumns) throws IOException {
+
+        List<Map<String, String>> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IllegalArgumentException(file + " is empty");
+            }
+            char separator = header.indexOf(',') >= 0 ? ',' : header.indexOf(';') >= 0 ? ';' : '\t';
+            List<String> columns = new ArrayList<>();
+            for (String column : splitCsv(header, separator)) {
+                columns.add(column.trim().toLowerCase(Locale.ROOT));
+            }
+            for (String column : requiredColumns) {
+                if (!columns.contains(column)) {
+                    throw new IllegalArgumentException(file + " has no " + column + " column");
+                }
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                List<String> fields = splitCsv(line, separator);
+                Map<String, String> row = new HashMap<>();
+                for (int i = 0; i < columns.size() && i < fields.size(); i++) {
+                    row.put(columns.get(i), fields.get(i));
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static List<String> splitCsv(String line, char separator) {
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == separator) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static class RecordedJob {
+
+        private final String id;
+        private final GaswStatus status;
+        private final long creation;
+        private final long end;
+        // first time of each of the PHASE_ENDS minor statuses, or 0
+        private final long[] times;
+        // queue, setup, inputs, execution and outputs durations, or -1 if
+        // unknown
+        private final long[] durations;
+        private long lastEvent;
+        private int failurePhase;
+        private boolean held;
+        private boolean complete;
+
+        RecordedJob(String id, GaswStatus status, long creation, long end) {
+
+            this.id = id;
+            this.status = status;
+            this.creation = creation;
+            this.end = end;
+            this.times = new long[PHASE_ENDS.length];
+            this.durations = new long[PHASE_ENDS.length];
+            this.lastEvent = creation;
+            this.failurePhase = -1;
+        }
+
+        void addMinorStatus(GaswMinorStatus status, long time) {
+
+            for (int i = 0; i < PHASE_ENDS.length; i++) {
+                if (PHASE_ENDS[i] == status && (times[i] == 0 || time < times[i])) {
+                    times[i] = time;
+                }
+            }
+            lastEvent = Math.max(lastEvent, time);
+        }
+
+        /**
+         * @return the number of phases the job ended, queue included
+         */
+        int getReachedPhases() {
+
+            int reached = 0;
+            while (reached < times.length && times[reached] != 0) {
+                reached++;
+            }
+            return reached;
+        }
+
+        void resolve() {
+
+            int reached = getReachedPhases();
+            long previous = creation;
+            for (int i = 0; i < durations.length; i++) {
+                durations[i] = i < reached ? Math.max(1, times[i] - previous) : -1;
+                previous = i < reached ? times[i] : previous;
+            }
+            switch (status) {
+                case COMPLETED:
+                    complete = reached == times.length;
+                    break;
+                case ERROR:
+                case STALLED:
+                case ERROR_HELD:
+                case STALLED_HELD:
+                    // failed during the first phase it did not end, or at the
+                    // end of the outputs
+                    held = status == GaswStatus.ERROR_HELD || status == GaswStatus.STALLED_HELD;
+                    failurePhase = Math.max(0, Math.min(reached, times.length - 1) - 1);
+                    if (reached < times.length && end > previous) {
+                        durations[reached] = end - previous;
+                        // never started: the failure ends the queue
+                        if (reached == 0) {
+                            durations[1] = 1;
+                        }
+                        complete = true;
+                    } else {
+                        complete = reached == times.length;
+                    }
+                    if (complete) {
+                        for (int i = 0; i < durations.length; i++) {
+                            durations[i] = Math.max(1, durations[i]);
+                        }
+                    }
+                    break;
+                default:
+                    complete = false;
+            }
+        }
+
+        JobProfile toProfile() {
+            return new JobProfile(durations.clone(), failurePhase, held);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.simulation;
+
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.HealingScheduler;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler running the healing cycles on a virtual clock. Nothing runs by
+ * itself: the simulator runs the next cycle when the virtual time reaches
+ * it, in the calling thread. Tasks run in parallel by a cycle run one
+ * after the other, so that simulations stay reproducible.
+ */
+public class VirtualScheduler implements HealingScheduler {
+
+    private final VirtualClock clock;
+    private final Random random;
+    private final PriorityQueue<VirtualTask> tasks;
+    private long sequence;
+    private long executedTasks;
+
+    public VirtualScheduler(VirtualClock clock, long seed) {
+
+        this.clock = clock;
+        this.random = new Random(seed);
+        this.tasks = new PriorityQueue<>();
+        this.sequence = 0;
+        this.executedTasks = 0;
+    }
+
+    @Override
+    public synchronized ScheduledFuture<?> schedule(Runnable task, long delay) {
+
+        VirtualTask virtualTask = new VirtualTask(clock.millis() + Math.max(0, delay), sequence++, task);
+        tasks.add(virtualTask);
+        return virtualTask;
+    }
+
+    @Override
+    public synchronized long jitter(long period) {
+        return period <= 0 ? 0 : random.nextLong(period + 1);
+    }
+
+    @Override
+    public void invokeAll(List<Callable<Void>> tasks) throws ExecutionException {
+
+        for (Callable<Void> task : tasks) {
+            try {
+                task.call();
+            } catch (Exception ex) {
+                throw new ExecutionException(ex);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        tasks.clear();
+    }
+
+    /**
+     * @return the time of the next pending task, or Long.MAX_VALUE if there
+     * is none
+     */
+    public synchronized long nextTime() {
+
+        while (!tasks.isEmpty() && tasks.peek().isCancelled()) {
+            tasks.poll();
+        }
+        return tasks.isEmpty() ? Long.MAX_VALUE : tasks.peek().time;
+    }
+
+    /**
+     * Advances the clock to the next pending task and runs it.
+     *
+     * @return false if there was no pending task
+     */
+    public boolean runNext() {
+
+        VirtualTask task;
+        synchronized (this) {
+            if (nextTime() == Long.MAX_VALUE) {
+                return false;
+            }
+            task = tasks.poll();
+            executedTasks++;
+        }
+        clock.advanceTo(task.time);
+        task.run();
+        return true;
+    }
+
+    public synchronized long getExecutedTasks() {
+        return executedTasks;
+    }
+
+    private class VirtualTask implements ScheduledFuture<Object> {
+
+        private final long time;
+        private final long order;
+        private final Runnable runnable;
+        private volatile boolean cancelled;
+        private volatile boolean done;
+
+        VirtualTask(long time, long order, Runnable runnable) {
+
+            this.time = time;
+            this.order = order;
+            this.runnable = runnable;
+        }
+
+        void run() {
+
+            if (!cancelled) {
+                runnable.run();
+            }
+            done = true;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - clock.millis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+
+            VirtualTask task = (VirtualTask) other;
+            int result = Long.compare(time, task.time);
+            return result != 0 ? result : Long.compare(order, task.order);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+
+            if (done) {
+                return false;
+            }
+            cancelled = true;
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done || cancelled;
+        }
+
+        @Override
+        public Object get() {
+            return null;
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) {
+            return null;
+        }
+    }
+}
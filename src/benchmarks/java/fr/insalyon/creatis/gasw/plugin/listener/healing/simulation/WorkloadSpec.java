@@ -0,0 +1,203 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.simulation;
+
+/**
+ * Description of a simulated workload. Phase durations follow log-normal
+ * distributions given by their median and sigma; times are in milliseconds.
+ */
+public class WorkloadSpec {
+
+    private String command = "simulated";
+    private int invocations = 100;
+    private long interArrivalTime = 0;
+    private long queueMedian = 60000;
+    private long setupMedian = 30000;
+    private long inputMedian = 120000;
+    private long executionMedian = 1800000;
+    private long outputMedian = 60000;
+    private double sigma = 0.3;
+    private double stragglerProbability = 0.05;
+    private double stragglerSlowdown = 10;
+    private double failureProbability = 0.02;
+    private double heldProbability = 0;
+    private long heldTime = 3600000;
+    private int retryCount = 3;
+    private long maxTime = 7 * 24 * 3600000L;
+    private long seed = 1;
+
+    public String getCommand() {
+        return command;
+    }
+
+    public void setCommand(String command) {
+        this.command = command;
+    }
+
+    public int getInvocations() {
+        return invocations;
+    }
+
+    public void setInvocations(int invocations) {
+        this.invocations = invocations;
+    }
+
+    public long getInterArrivalTime() {
+        return interArrivalTime;
+    }
+
+    public void setInterArrivalTime(long interArrivalTime) {
+        this.interArrivalTime = interArrivalTime;
+    }
+
+    public long getQueueMedian() {
+        return queueMedian;
+    }
+
+    public void setQueueMedian(long queueMedian) {
+        this.queueMedian = queueMedian;
+    }
+
+    public long getSetupMedian() {
+        return setupMedian;
+    }
+
+    public void setSetupMedian(long setupMedian) {
+        this.setupMedian = setupMedian;
+    }
+
+    public long getInputMedian() {
+        return inputMedian;
+    }
+
+    public void setInputMedian(long inputMedian) {
+        this.inputMedian = inputMedian;
+    }
+
+    public long getExecutionMedian() {
+        return executionMedian;
+    }
+
+    public void setExecutionMedian(long executionMedian) {
+        this.executionMedian = executionMedian;
+    }
+
+    public long getOutputMedian() {
+        return outputMedian;
+    }
+
+    public void setOutputMedian(long outputMedian) {
+        this.outputMedian = outputMedian;
+    }
+
+    public double getSigma() {
+        return sigma;
+    }
+
+    public void setSigma(double sigma) {
+        this.sigma = sigma;
+    }
+
+    public double getStragglerProbability() {
+        return stragglerProbability;
+    }
+
+    public void setStragglerProbability(double stragglerProbability) {
+        this.stragglerProbability = stragglerProbability;
+    }
+
+    public double getStragglerSlowdown() {
+        return stragglerSlowdown;
+    }
+
+    public void setStragglerSlowdown(double stragglerSlowdown) {
+        this.stragglerSlowdown = stragglerSlowdown;
+    }
+
+    public double getFailureProbability() {
+        return failureProbability;
+    }
+
+    public void setFailureProbability(double failureProbability) {
+        this.failureProbability = failureProbability;
+    }
+
+    /**
+     * @return the probability that a failed job is held instead of failing
+     */
+    public double getHeldProbability() {
+        return heldProbability;
+    }
+
+    public void setHeldProbability(double heldProbability) {
+        this.heldProbability = heldProbability;
+    }
+
+    /**
+     * @return how long a held job stays held before being failed
+     */
+    public long getHeldTime() {
+        return heldTime;
+    }
+
+    public void setHeldTime(long heldTime) {
+        this.heldTime = heldTime;
+    }
+
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    public void setRetryCount(int retryCount) {
+        this.retryCount = retryCount;
+    }
+
+    /**
+     * @return simulated time after which the simulation stops
+     */
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    public void setMaxTime(long maxTime) {
+        this.maxTime = maxTime;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
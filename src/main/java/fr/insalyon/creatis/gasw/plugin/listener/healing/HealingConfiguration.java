@@ -34,15 +34,22 @@ package fr.insalyon.creatis.gasw.plugin.listener.healing;
 
 import fr.insalyon.creatis.gasw.GaswConfiguration;
 import fr.insalyon.creatis.gasw.GaswException;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.SequentialErrorTest;
 import org.apache.commons.configuration.ConfigurationException;
+import java.util.function.Consumer;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class HealingConfiguration {
+/**
+ * Configuration of the plugin. An instance is never modified: a runtime
+ * change through {@link #tune} publishes a new instance, so a healing cycle
+ * reads a consistent snapshot by calling {@link #getInstance()} once.
+ */
+public class HealingConfiguration implements Cloneable {
 
     private static final Logger logger = LoggerFactory.getLogger(HealingConfiguration.class);
-    private static HealingConfiguration instance;
+    private static volatile HealingConfiguration instance;
     private int sleepTime;
     private double blockedCoefficient;
     private int maxReplicas;
@@ -50,43 +57,237 @@ public class HealingConfiguration {
     private double maxErrorJobPercentage;
     private double maxErrorInvocationPercentage;
     private int minInvocations;
+    private int errorReconcileTime;
+    private int killParallelism;
+    private int updateRetries;
+    private boolean adaptive;
+    private int adaptiveMinSleepTime;
+    private int adaptiveMaxSleepTime;
+    private double adaptiveMedianRatio;
+    private int schedulerThreads;
+    private boolean schedulerVirtual;
+    private boolean metricsJmx;
+    private String statsMode;
+    private int statsWindowSize;
+    private int statsWindowTime;
+    private int statsDecayHalfLife;
+    private boolean statsSite;
+    private int statsSiteMinSamples;
+    private String statsStore;
+    private int statsPriorWeight;
+    private int replicaBudgetCapacity;
+    private double replicaBudgetRate;
+    private int evaluationParallelism;
+    private int daoConcurrency;
+    private String journal;
+    private boolean journalEvents;
+    private int journalBuffer;
+    private boolean sprt;
+    private double sprtAcceptableError;
+    private double sprtFailingError;
+    private double sprtRisk;
+    // built once from the sprt settings, null when disabled or invalid
+    private SequentialErrorTest sequentialErrorTest;
+    private double blockedSetupCoefficient;
+    private double blockedInputCoefficient;
+    private double blockedExecutionCoefficient;
+    private double blockedOutputCoefficient;
+    private double tailFraction;
+    private int tailMinInvocations;
+    private double tailBlockedCoefficient;
+    private int tailMaxReplicas;
+    private boolean daoGovernor;
+    private int daoLatencyTarget;
+    private double daoMaxStretch;
+    private int daoFailureThreshold;
+    private int daoOpenTime;
+    private int activeJobsMaxAge;
+    private int replicaBudgetOfferTime;
+    private int errorOutcomeMaxAge;
+    private int defaultRetryCount;
 
     public static HealingConfiguration getInstance() {
 
-        if (instance == null) {
-            instance = new HealingConfiguration();
+        HealingConfiguration current = instance;
+        if (current == null) {
+            synchronized (HealingConfiguration.class) {
+                if (instance == null) {
+                    instance = new HealingConfiguration();
+                }
+                current = instance;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Replaces the configuration by one read from the given properties, to
+     * run the plugin outside of GASW (benchmarks, simulations).
+     *
+     * @param config
+     * @param defaultRetryCount GASW default retry count
+     */
+    public static synchronized void initialize(PropertiesConfiguration config, int defaultRetryCount) {
+        instance = create(config, defaultRetryCount);
+    }
+
+    /**
+     * Reads a configuration from the given properties without making it the
+     * plugin one, e.g. to run several simulations in parallel.
+     *
+     * @param config
+     * @param defaultRetryCount GASW default retry count
+     * @return
+     */
+    public static HealingConfiguration create(PropertiesConfiguration config, int defaultRetryCount) {
+        return new HealingConfiguration(config, defaultRetryCount);
+    }
+
+    /**
+     * Publishes a copy of the current configuration with the given changes.
+     * The changes are not saved and last until the plugin is reloaded.
+     *
+     * @param changes applied to the copy before it is published
+     */
+    public static synchronized void tune(Consumer<HealingConfiguration> changes) {
+        instance = getInstance().tuned(changes);
+    }
+
+    /**
+     * @param changes applied to the copy
+     * @return a copy of this configuration with the given changes
+     */
+    public HealingConfiguration tuned(Consumer<HealingConfiguration> changes) {
+
+        HealingConfiguration tuned = copy();
+        changes.accept(tuned);
+        return tuned;
+    }
+
+    private HealingConfiguration copy() {
+
+        try {
+            return (HealingConfiguration) super.clone();
+        } catch (CloneNotSupportedException ex) {
+            throw new IllegalStateException(ex);
         }
-        return instance;
     }
 
     private HealingConfiguration() {
 
         try {
-            PropertiesConfiguration config = GaswConfiguration.getInstance().getPropertiesConfiguration();
-
-            sleepTime = config.getInt(HealingConstants.LAB_SLEEP_TIME, 15) * 1000;
-            blockedCoefficient = config.getDouble(HealingConstants.LAB_BLOCKED_COEFFICIENT, 2);
-            maxReplicas = config.getInt(HealingConstants.LAB_MAX_REPLICAS, 2);
-            statsChangePercentage = config.getInt(HealingConstants.LAB_STATS_CHANGE_PERCENTAGE, 10);
-            maxErrorJobPercentage = config.getDouble(HealingConstants.LAB_MAX_ERROR_JOB_PERCENTAGE, 60);
-            maxErrorInvocationPercentage = config.getDouble(HealingConstants.LAB_MAX_ERROR_INVOCATION_PERCENTAGE, 99.9);
-            minInvocations = config.getInt(HealingConstants.LAB_MIN_INVOCATIONS, 100);
-
-            config.setProperty(HealingConstants.LAB_SLEEP_TIME, sleepTime / 1000);
-            config.setProperty(HealingConstants.LAB_BLOCKED_COEFFICIENT, blockedCoefficient);
-            config.setProperty(HealingConstants.LAB_MAX_REPLICAS, maxReplicas);
-            config.setProperty(HealingConstants.LAB_STATS_CHANGE_PERCENTAGE, statsChangePercentage);
-            config.setProperty(HealingConstants.LAB_MAX_ERROR_JOB_PERCENTAGE, maxErrorJobPercentage);
-            config.setProperty(HealingConstants.LAB_MAX_ERROR_INVOCATION_PERCENTAGE, maxErrorInvocationPercentage);
-            config.setProperty(HealingConstants.LAB_MIN_INVOCATIONS, minInvocations);
-
-            config.save();
+            GaswConfiguration gaswConfig = GaswConfiguration.getInstance();
+            PropertiesConfiguration config = gaswConfig.getPropertiesConfiguration();
+
+            read(config);
+            defaultRetryCount = gaswConfig.getDefaultRetryCount();
+
+            // the defaults of the operator settings are written once, so that
+            // they can be edited. The other settings keep their defaults
+            // unless set, not to fill the shared GASW configuration file.
+            boolean missing = false;
+            missing |= setDefault(config, HealingConstants.LAB_SLEEP_TIME, sleepTime / 1000);
+            missing |= setDefault(config, HealingConstants.LAB_BLOCKED_COEFFICIENT, blockedCoefficient);
+            missing |= setDefault(config, HealingConstants.LAB_MAX_REPLICAS, maxReplicas);
+            missing |= setDefault(config, HealingConstants.LAB_STATS_CHANGE_PERCENTAGE, statsChangePercentage);
+            missing |= setDefault(config, HealingConstants.LAB_MAX_ERROR_JOB_PERCENTAGE, maxErrorJobPercentage);
+            missing |= setDefault(config, HealingConstants.LAB_MAX_ERROR_INVOCATION_PERCENTAGE, maxErrorInvocationPercentage);
+            missing |= setDefault(config, HealingConstants.LAB_MIN_INVOCATIONS, minInvocations);
+
+            if (missing) {
+                config.save();
+            }
 
         } catch (ConfigurationException | GaswException ex) {
             logger.error("Error initializing HealingConfiguration: ", ex);
         }
     }
 
+    private static boolean setDefault(PropertiesConfiguration config, String key, Object value) {
+
+        if (config.containsKey(key)) {
+            return false;
+        }
+        config.setProperty(key, value);
+        return true;
+    }
+
+    private HealingConfiguration(PropertiesConfiguration config, int defaultRetryCount) {
+
+        read(config);
+        this.defaultRetryCount = defaultRetryCount;
+    }
+
+    private void read(PropertiesConfiguration config) {
+
+        sleepTime = config.getInt(HealingConstants.LAB_SLEEP_TIME, 15) * 1000;
+        blockedCoefficient = config.getDouble(HealingConstants.LAB_BLOCKED_COEFFICIENT, 2);
+        maxReplicas = config.getInt(HealingConstants.LAB_MAX_REPLICAS, 2);
+        statsChangePercentage = config.getInt(HealingConstants.LAB_STATS_CHANGE_PERCENTAGE, 10);
+        maxErrorJobPercentage = config.getDouble(HealingConstants.LAB_MAX_ERROR_JOB_PERCENTAGE, 60);
+        maxErrorInvocationPercentage = config.getDouble(HealingConstants.LAB_MAX_ERROR_INVOCATION_PERCENTAGE, 99.9);
+        minInvocations = config.getInt(HealingConstants.LAB_MIN_INVOCATIONS, 100);
+        errorReconcileTime = config.getInt(HealingConstants.LAB_ERROR_RECONCILE_TIME, 300) * 1000;
+        killParallelism = config.getInt(HealingConstants.LAB_KILL_PARALLELISM, 8);
+        updateRetries = config.getInt(HealingConstants.LAB_UPDATE_RETRIES, 3);
+        adaptive = config.getBoolean(HealingConstants.LAB_ADAPTIVE, false);
+        adaptiveMinSleepTime = config.getInt(HealingConstants.LAB_ADAPTIVE_MIN_SLEEP_TIME, 5) * 1000;
+        adaptiveMaxSleepTime = config.getInt(HealingConstants.LAB_ADAPTIVE_MAX_SLEEP_TIME, 300) * 1000;
+        adaptiveMedianRatio = config.getDouble(HealingConstants.LAB_ADAPTIVE_MEDIAN_RATIO, 0.1);
+        schedulerThreads = config.getInt(HealingConstants.LAB_SCHEDULER_THREADS, 4);
+        schedulerVirtual = config.getBoolean(HealingConstants.LAB_SCHEDULER_VIRTUAL, false);
+        metricsJmx = config.getBoolean(HealingConstants.LAB_METRICS_JMX, true);
+        statsMode = config.getString(HealingConstants.LAB_STATS_MODE, "cumulative");
+        statsWindowSize = config.getInt(HealingConstants.LAB_STATS_WINDOW_SIZE, 500);
+        statsWindowTime = config.getInt(HealingConstants.LAB_STATS_WINDOW_TIME, 3600) * 1000;
+        statsDecayHalfLife = config.getInt(HealingConstants.LAB_STATS_DECAY_HALF_LIFE, 0) * 1000;
+        statsSite = config.getBoolean(HealingConstants.LAB_STATS_SITE, false);
+        statsSiteMinSamples = config.getInt(HealingConstants.LAB_STATS_SITE_MIN_SAMPLES, 10);
+        statsStore = config.getString(HealingConstants.LAB_STATS_STORE, "");
+        statsPriorWeight = config.getInt(HealingConstants.LAB_STATS_PRIOR_WEIGHT, 20);
+        replicaBudgetCapacity = config.getInt(HealingConstants.LAB_REPLICA_BUDGET_CAPACITY, 0);
+        replicaBudgetRate = config.getDouble(HealingConstants.LAB_REPLICA_BUDGET_RATE, 10);
+        evaluationParallelism = config.getInt(HealingConstants.LAB_EVALUATION_PARALLELISM, 1);
+        daoConcurrency = config.getInt(HealingConstants.LAB_DAO_CONCURRENCY, 4);
+        journal = config.getString(HealingConstants.LAB_JOURNAL, "");
+        journalEvents = config.getBoolean(HealingConstants.LAB_JOURNAL_EVENTS, true);
+        journalBuffer = config.getInt(HealingConstants.LAB_JOURNAL_BUFFER, 65536);
+        sprt = config.getBoolean(HealingConstants.LAB_SPRT, false);
+        sprtAcceptableError = config.getDouble(HealingConstants.LAB_SPRT_ACCEPTABLE_ERROR, 20);
+        sprtFailingError = config.getDouble(HealingConstants.LAB_SPRT_FAILING_ERROR, 60);
+        sprtRisk = config.getDouble(HealingConstants.LAB_SPRT_RISK, 0.001);
+        blockedSetupCoefficient = config.getDouble(HealingConstants.LAB_BLOCKED_COEFFICIENT_SETUP, 0);
+        blockedInputCoefficient = config.getDouble(HealingConstants.LAB_BLOCKED_COEFFICIENT_INPUT, 0);
+        blockedExecutionCoefficient = config.getDouble(HealingConstants.LAB_BLOCKED_COEFFICIENT_EXECUTION, 0);
+        blockedOutputCoefficient = config.getDouble(HealingConstants.LAB_BLOCKED_COEFFICIENT_OUTPUT, 0);
+        tailFraction = config.getDouble(HealingConstants.LAB_TAIL_FRACTION, 0);
+        tailMinInvocations = config.getInt(HealingConstants.LAB_TAIL_MIN_INVOCATIONS, 10);
+        tailBlockedCoefficient = config.getDouble(HealingConstants.LAB_TAIL_BLOCKED_COEFFICIENT, 1.5);
+        tailMaxReplicas = config.getInt(HealingConstants.LAB_TAIL_MAX_REPLICAS, 3);
+        daoGovernor = config.getBoolean(HealingConstants.LAB_DAO_GOVERNOR, true);
+        daoLatencyTarget = config.getInt(HealingConstants.LAB_DAO_LATENCY_TARGET, 500);
+        daoMaxStretch = config.getDouble(HealingConstants.LAB_DAO_MAX_STRETCH, 8);
+        daoFailureThreshold = config.getInt(HealingConstants.LAB_DAO_FAILURE_THRESHOLD, 5);
+        daoOpenTime = config.getInt(HealingConstants.LAB_DAO_OPEN_TIME, 60) * 1000;
+        activeJobsMaxAge = config.getInt(HealingConstants.LAB_ACTIVE_JOBS_MAX_AGE, 5) * 1000;
+        replicaBudgetOfferTime = config.getInt(HealingConstants.LAB_REPLICA_BUDGET_OFFER_TIME, 60) * 1000;
+        errorOutcomeMaxAge = config.getInt(HealingConstants.LAB_ERROR_OUTCOME_MAX_AGE, 86400) * 1000;
+        sequentialErrorTest = createSequentialErrorTest();
+    }
+
+    private SequentialErrorTest createSequentialErrorTest() {
+
+        if (!sprt) {
+            return null;
+        }
+        try {
+            return new SequentialErrorTest(sprtAcceptableError, sprtFailingError, sprtRisk);
+        } catch (IllegalArgumentException ex) {
+            logger.warn("Sequential error test disabled: {}", ex.getMessage());
+            return null;
+        }
+    }
+
     public int getSleepTime() {
         return sleepTime;
     }
@@ -114,4 +315,220 @@ public class HealingConfiguration {
     public int getMinInvocations() {
         return minInvocations;
     }
+
+    public int getErrorReconcileTime() {
+        return errorReconcileTime;
+    }
+
+    public int getKillParallelism() {
+        return killParallelism;
+    }
+
+    public int getUpdateRetries() {
+        return updateRetries;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public int getAdaptiveMinSleepTime() {
+        return adaptiveMinSleepTime;
+    }
+
+    public int getAdaptiveMaxSleepTime() {
+        return adaptiveMaxSleepTime;
+    }
+
+    public double getAdaptiveMedianRatio() {
+        return adaptiveMedianRatio;
+    }
+
+    public int getSchedulerThreads() {
+        return schedulerThreads;
+    }
+
+    public boolean isSchedulerVirtual() {
+        return schedulerVirtual;
+    }
+
+    public boolean isMetricsJmx() {
+        return metricsJmx;
+    }
+
+    public String getStatsMode() {
+        return statsMode;
+    }
+
+    public int getStatsWindowSize() {
+        return statsWindowSize;
+    }
+
+    public int getStatsWindowTime() {
+        return statsWindowTime;
+    }
+
+    public int getStatsDecayHalfLife() {
+        return statsDecayHalfLife;
+    }
+
+    public boolean isStatsSite() {
+        return statsSite;
+    }
+
+    public int getStatsSiteMinSamples() {
+        return statsSiteMinSamples;
+    }
+
+    public String getStatsStore() {
+        return statsStore;
+    }
+
+    public int getStatsPriorWeight() {
+        return statsPriorWeight;
+    }
+
+    public int getReplicaBudgetCapacity() {
+        return replicaBudgetCapacity;
+    }
+
+    public double getReplicaBudgetRate() {
+        return replicaBudgetRate;
+    }
+
+    public int getEvaluationParallelism() {
+        return evaluationParallelism;
+    }
+
+    public int getDaoConcurrency() {
+        return daoConcurrency;
+    }
+
+    public String getJournal() {
+        return journal;
+    }
+
+    public boolean isJournalEvents() {
+        return journalEvents;
+    }
+
+    public int getJournalBuffer() {
+        return journalBuffer;
+    }
+
+    public boolean isSprt() {
+        return sprt;
+    }
+
+    public double getSprtAcceptableError() {
+        return sprtAcceptableError;
+    }
+
+    public double getSprtFailingError() {
+        return sprtFailingError;
+    }
+
+    public double getSprtRisk() {
+        return sprtRisk;
+    }
+
+    /**
+     * @return the sequential error test, or null if it is disabled or its
+     * settings are invalid
+     */
+    public SequentialErrorTest getSequentialErrorTest() {
+        return sequentialErrorTest;
+    }
+
+    public double getBlockedSetupCoefficient() {
+        return blockedSetupCoefficient;
+    }
+
+    public double getBlockedInputCoefficient() {
+        return blockedInputCoefficient;
+    }
+
+    public double getBlockedExecutionCoefficient() {
+        return blockedExecutionCoefficient;
+    }
+
+    public double getBlockedOutputCoefficient() {
+        return blockedOutputCoefficient;
+    }
+
+    public double getTailFraction() {
+        return tailFraction;
+    }
+
+    public int getTailMinInvocations() {
+        return tailMinInvocations;
+    }
+
+    public double getTailBlockedCoefficient() {
+        return tailBlockedCoefficient;
+    }
+
+    public int getTailMaxReplicas() {
+        return tailMaxReplicas;
+    }
+
+    public boolean isDaoGovernor() {
+        return daoGovernor;
+    }
+
+    public int getDaoLatencyTarget() {
+        return daoLatencyTarget;
+    }
+
+    public double getDaoMaxStretch() {
+        return daoMaxStretch;
+    }
+
+    public int getDaoFailureThreshold() {
+        return daoFailureThreshold;
+    }
+
+    public int getDaoOpenTime() {
+        return daoOpenTime;
+    }
+
+    public int getActiveJobsMaxAge() {
+        return activeJobsMaxAge;
+    }
+
+    public int getReplicaBudgetOfferTime() {
+        return replicaBudgetOfferTime;
+    }
+
+    public int getErrorOutcomeMaxAge() {
+        return errorOutcomeMaxAge;
+    }
+
+    public int getDefaultRetryCount() {
+        return defaultRetryCount;
+    }
+
+    void setSleepTime(int sleepTime) {
+        this.sleepTime = sleepTime;
+    }
+
+    void setBlockedCoefficient(double blockedCoefficient) {
+        this.blockedCoefficient = blockedCoefficient;
+    }
+
+    void setMaxReplicas(int maxReplicas) {
+        this.maxReplicas = maxReplicas;
+    }
+
+    void setMaxErrorJobPercentage(double maxErrorJobPercentage) {
+        this.maxErrorJobPercentage = maxErrorJobPercentage;
+    }
+
+    void setMaxErrorInvocationPercentage(double maxErrorInvocationPercentage) {
+        this.maxErrorInvocationPercentage = maxErrorInvocationPercentage;
+    }
+
+    void setMinInvocations(int minInvocations) {
+        this.minInvocations = minInvocations;
+    }
 }
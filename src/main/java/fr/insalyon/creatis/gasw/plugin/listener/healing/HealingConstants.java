@@ -49,4 +49,93 @@ public class HealingConstants {
     public final static String LAB_MAX_ERROR_INVOCATION_PERCENTAGE = "plugin.healing.max.errorInvocationPercentage";
     // minimum number of invocations per workflow in STOP condition
     public final static String LAB_MIN_INVOCATIONS = "plugin.healing.min.invocations";
+    // seconds between two recomputations of the error rates from the database
+    public final static String LAB_ERROR_RECONCILE_TIME = "plugin.healing.errors.reconcile.time";
+    // maximum number of held jobs released in parallel when killing all the jobs of a command
+    public final static String LAB_KILL_PARALLELISM = "plugin.healing.kill.parallelism";
+    // number of immediate retries of a batch of job status updates that failed
+    public final static String LAB_UPDATE_RETRIES = "plugin.healing.update.retries";
+    // derive the healing interval from the phase medians instead of using a fixed sleep time
+    public final static String LAB_ADAPTIVE = "plugin.healing.adaptive";
+    // bounds of the adaptive healing interval, in seconds
+    public final static String LAB_ADAPTIVE_MIN_SLEEP_TIME = "plugin.healing.adaptive.min.sleeptime";
+    public final static String LAB_ADAPTIVE_MAX_SLEEP_TIME = "plugin.healing.adaptive.max.sleeptime";
+    // adaptive healing interval as a fraction of the shortest phase median
+    public final static String LAB_ADAPTIVE_MEDIAN_RATIO = "plugin.healing.adaptive.median.ratio";
+    // number of threads shared by all the commands to run their healing cycles
+    public final static String LAB_SCHEDULER_THREADS = "plugin.healing.scheduler.threads";
+    // run each healing cycle in its own virtual thread instead of the shared pool
+    public final static String LAB_SCHEDULER_VIRTUAL = "plugin.healing.scheduler.virtual";
+    // expose the metrics of each command as a JMX MBean
+    public final static String LAB_METRICS_JMX = "plugin.healing.metrics.jmx";
+    // phase statistics: cumulative (all samples since the start) or window (recent samples only)
+    public final static String LAB_STATS_MODE = "plugin.healing.stats.mode";
+    // maximum number of samples per phase in window mode
+    public final static String LAB_STATS_WINDOW_SIZE = "plugin.healing.stats.window.size";
+    // age, in seconds, after which a sample leaves the window (0 to keep the last samples whatever their age)
+    public final static String LAB_STATS_WINDOW_TIME = "plugin.healing.stats.window.time";
+    // half-life, in seconds, of the weight of a sample in window mode (0 to disable the decay)
+    public final static String LAB_STATS_DECAY_HALF_LIFE = "plugin.healing.stats.decay.halflife";
+    // also keep phase statistics per execution site, to estimate each job against its own site
+    public final static String LAB_STATS_SITE = "plugin.healing.stats.site";
+    // minimum number of samples of a site phase to use it instead of the command statistics
+    public final static String LAB_STATS_SITE_MIN_SAMPLES = "plugin.healing.stats.site.min.samples";
+    // directory where the phase statistics of each command are saved at the end and preloaded at the start (empty to disable)
+    public final static String LAB_STATS_STORE = "plugin.healing.stats.store";
+    // number of samples the preloaded statistics of a phase count for
+    public final static String LAB_STATS_PRIOR_WEIGHT = "plugin.healing.stats.prior.weight";
+    // maximum number of replicas all the commands can submit in a burst (0 for no global budget)
+    public final static String LAB_REPLICA_BUDGET_CAPACITY = "plugin.healing.replicas.budget.capacity";
+    // number of replicas per minute added back to the global budget
+    public final static String LAB_REPLICA_BUDGET_RATE = "plugin.healing.replicas.budget.rate";
+    // number of workers evaluating the invocations of a command in a cycle (1 to evaluate them serially)
+    public final static String LAB_EVALUATION_PARALLELISM = "plugin.healing.evaluation.parallelism";
+    // maximum number of concurrent database calls of the healing, to stay within the GASW connection pool (0 for no limit)
+    public final static String LAB_DAO_CONCURRENCY = "plugin.healing.dao.concurrency";
+    // file where the decisions and events are journaled as NDJSON (empty to disable)
+    public final static String LAB_JOURNAL = "plugin.healing.journal";
+    // also journal the listener events (finished jobs and minor statuses), not only the decisions
+    public final static String LAB_JOURNAL_EVENTS = "plugin.healing.journal.events";
+    // number of journal entries buffered before new ones are dropped
+    public final static String LAB_JOURNAL_BUFFER = "plugin.healing.journal.buffer";
+    // kill all the jobs of a command as soon as a sequential probability ratio test concludes that it is failing
+    public final static String LAB_SPRT = "plugin.healing.sprt";
+    // job error percentage of a healthy command, for the sequential test
+    public final static String LAB_SPRT_ACCEPTABLE_ERROR = "plugin.healing.sprt.acceptable.error";
+    // job error percentage of a failing command, for the sequential test
+    public final static String LAB_SPRT_FAILING_ERROR = "plugin.healing.sprt.failing.error";
+    // probability of killing a healthy command with the sequential test
+    public final static String LAB_SPRT_RISK = "plugin.healing.sprt.risk";
+    // ratio between the time spent in the setup phase and its median above which a job is replicated (0 to only use the blocked coefficient)
+    public final static String LAB_BLOCKED_COEFFICIENT_SETUP = "plugin.healing.blocked.coefficient.setup";
+    // ratio between the time spent in the input phase and its median above which a job is replicated (0 to only use the blocked coefficient)
+    public final static String LAB_BLOCKED_COEFFICIENT_INPUT = "plugin.healing.blocked.coefficient.input";
+    // ratio between the time spent in the execution phase and its median above which a job is replicated (0 to only use the blocked coefficient)
+    public final static String LAB_BLOCKED_COEFFICIENT_EXECUTION = "plugin.healing.blocked.coefficient.execution";
+    // ratio between the time spent in the output phase and its median above which a job is replicated (0 to only use the blocked coefficient)
+    public final static String LAB_BLOCKED_COEFFICIENT_OUTPUT = "plugin.healing.blocked.coefficient.output";
+    // fraction of unfinished invocations of a command under which its tail is healed with the tail coefficient and replicas (0 to disable)
+    public final static String LAB_TAIL_FRACTION = "plugin.healing.tail.fraction";
+    // minimum number of invocations of a command before its tail can be detected
+    public final static String LAB_TAIL_MIN_INVOCATIONS = "plugin.healing.tail.min.invocations";
+    // blocked coefficient used in the tail of a command
+    public final static String LAB_TAIL_BLOCKED_COEFFICIENT = "plugin.healing.tail.blocked.coefficient";
+    // maximum number of replicas of an invocation in the tail of a command
+    public final static String LAB_TAIL_MAX_REPLICAS = "plugin.healing.tail.max.replicas";
+    // slow down and suspend the healing cycles when the database is slow or failing
+    public final static String LAB_DAO_GOVERNOR = "plugin.healing.dao.governor";
+    // average DAO call latency, in milliseconds, above which the healing cycles are stretched
+    public final static String LAB_DAO_LATENCY_TARGET = "plugin.healing.dao.latency.target";
+    // maximum factor applied to the delay between healing cycles when the database is slow
+    public final static String LAB_DAO_MAX_STRETCH = "plugin.healing.dao.max.stretch";
+    // number of consecutive DAO failures suspending the healing cycles
+    public final static String LAB_DAO_FAILURE_THRESHOLD = "plugin.healing.dao.failure.threshold";
+    // time during which the healing cycles are suspended after DAO failures, doubled while the failures go on
+    public final static String LAB_DAO_OPEN_TIME = "plugin.healing.dao.open.time";
+    // time during which the active jobs loaded from the database are shared by the healing cycles of all the commands, 0 to load them in every cycle
+    public final static String LAB_ACTIVE_JOBS_MAX_AGE = "plugin.healing.active.jobs.max.age";
+    // time in seconds during which the deferred replicas of a command keep their rank in the global budget
+    public final static String LAB_REPLICA_BUDGET_OFFER_TIME = "plugin.healing.replicas.budget.offer.time";
+    // time in seconds after which a job still running is left out of the sequential error test
+    public final static String LAB_ERROR_OUTCOME_MAX_AGE = "plugin.healing.error.outcome.max.age";
 }
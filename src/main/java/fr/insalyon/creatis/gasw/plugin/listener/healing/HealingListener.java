@@ -39,16 +39,15 @@ import fr.insalyon.creatis.gasw.GaswExitCode;
 import fr.insalyon.creatis.gasw.GaswOutput;
 import fr.insalyon.creatis.gasw.bean.Job;
 import fr.insalyon.creatis.gasw.bean.JobMinorStatus;
-import fr.insalyon.creatis.gasw.dao.DAOException;
-import fr.insalyon.creatis.gasw.dao.DAOFactory;
-import fr.insalyon.creatis.gasw.dao.JobMinorStatusDAO;
-import fr.insalyon.creatis.gasw.execution.GaswMinorStatus;
 import fr.insalyon.creatis.gasw.plugin.ListenerPlugin;
 import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.CommandState;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.HealingContext;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.JobTimelines;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.SitePhaseStatistics;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,7 +58,21 @@ import net.xeoh.plugins.base.annotations.PluginImplementation;
 public class HealingListener implements ListenerPlugin {
 
     private static final Logger logger = LoggerFactory.getLogger(HealingListener.class);
-    private volatile Map<String, CommandState> commandsMap;
+    private final ConcurrentMap<String, CommandState> commandsMap = new ConcurrentHashMap<>();
+    private HealingContext context;
+
+    public HealingListener() {
+    }
+
+    /**
+     * Creates a listener running with the given services instead of the GASW
+     * ones, e.g. in benchmarks and simulations.
+     *
+     * @param context
+     */
+    public HealingListener(HealingContext context) {
+        this.context = context;
+    }
 
     @Override
     public String getPluginName() {
@@ -72,8 +85,12 @@ public class HealingListener implements ListenerPlugin {
         logger.info("Loading Self-Healing GASW Plugin version {}",
                 getClass().getPackage().getImplementationVersion());
         
-        HealingConfiguration.getInstance();
-        commandsMap = new HashMap<String, CommandState>();
+        if (context == null) {
+            context = HealingContext.builder().build();
+            if (context.getConfiguration().isMetricsJmx()) {
+                HealingTuning.register(context);
+            }
+        }
     }
 
     @Override
@@ -84,73 +101,98 @@ public class HealingListener implements ListenerPlugin {
 
     @Override
     public void jobSubmitted(Job job) throws GaswException {
-        String command = job.getCommand();
-
-        if ( ! commandsMap.containsKey(command)) {
-            commandsMap.put(command, new CommandState(command));
-        }
+        getCommandState(job.getCommand()).jobSubmitted(job);
     }
 
     @Override
     public void jobFinished(GaswOutput gaswOutput) throws GaswException {
-        try {
-            logger.info("Job {} finished with exit code {}", gaswOutput.getJobID(), gaswOutput.getExitCode());
-            // Attention, gaswOutput.getJobID() returns the Moteur job ID in the format command-4072786226984043.jdl
-            String jobID = gaswOutput.getJobID();
-            String command = jobID.replaceAll("(-[0-9]+.jdl)$", "");
-            CommandState cs;
-            if (commandsMap.containsKey(command)) {
-                cs = commandsMap.get(command);
-            } else {
-                cs = new CommandState(command);
-                commandsMap.put(command, cs);
-            }
-            if (gaswOutput.getExitCode() != GaswExitCode.SUCCESS && gaswOutput.getExitCode() != GaswExitCode.EXECUTION_CANCELED) {
-                cs.updateErrorRatesAndKillDecision();
-            }
-        } catch (DAOException ex) {
-            logger.error("Error computing error rates", ex);
-        }
+        logger.debug("Job {} finished with exit code {}", gaswOutput.getJobID(), gaswOutput.getExitCode());
+        // Attention, gaswOutput.getJobID() returns the Moteur job ID in the format command-4072786226984043.jdl
+        String jobID = gaswOutput.getJobID();
+        String command = getCommand(jobID);
+        boolean failed = gaswOutput.getExitCode() != GaswExitCode.SUCCESS
+                && gaswOutput.getExitCode() != GaswExitCode.EXECUTION_CANCELED;
+        getCommandState(command).jobFinished(jobID, failed);
+        context.getJournal().jobFinished(command, jobID, failed);
     }
 
     @Override
     public void jobStatusChanged(Job job) throws GaswException {
+
+        if (JobTimelines.isTerminal(job.getStatus())) {
+            context.getTimelines().evict(job.getId());
+        }
     }
 
     @Override
     public void jobMinorStatusReported(JobMinorStatus jobMinorStatus) throws GaswException {
 
-        try {
-            logger.info("Minor Status Reported: {} - {}", jobMinorStatus.getJob().getId(), jobMinorStatus.getStatus().name());
-            Job job = jobMinorStatus.getJob();
-            CommandState cs;
-            if (commandsMap.containsKey(job.getCommand())) {
-                cs = commandsMap.get(job.getCommand());
-            } else {
-                cs = new CommandState(job.getCommand());
-                commandsMap.put(job.getCommand(), cs);
-            }
+        logger.debug("Minor Status Reported: {} - {}", jobMinorStatus.getJob().getId(), jobMinorStatus.getStatus().name());
+        Job job = jobMinorStatus.getJob();
+        CommandState cs = getCommandState(job.getCommand());
+
+        // the phase durations come from the timeline, without database access
+        long duration = context.getTimelines().record(job.getId(),
+                jobMinorStatus.getStatus(), jobMinorStatus.getDate().getTime());
+        context.getJournal().minorStatus(job.getCommand(), job.getId(), jobMinorStatus.getStatus(), duration);
+        if (duration < 0) {
+            return;
+        }
+        String site = SitePhaseStatistics.getSite(job);
+        switch (jobMinorStatus.getStatus()) {
+            case Inputs:
+                cs.addSetupTime(site, duration);
+                break;
+            case Application:
+                cs.addDownloadTime(site, duration);
+                break;
+            case Outputs:
+                cs.addExecutionTime(site, duration);
+                break;
+            case Finished:
+                cs.addUploadTime(site, duration);
+                cs.wake();
+                break;
+            default:
+        }
+    }
 
-            JobMinorStatusDAO minorStatusDAO = DAOFactory.getDAOFactory().getJobMinorStatusDAO();
-
-            switch (jobMinorStatus.getStatus()) {
-                case Inputs:
-                    cs.addSetupTime(minorStatusDAO.getDateDiff(job.getId(), GaswMinorStatus.Started, GaswMinorStatus.Inputs));
-                    break;
-                case Application:
-                    cs.addDownloadTime(minorStatusDAO.getDateDiff(job.getId(), GaswMinorStatus.Inputs, GaswMinorStatus.Application));
-                    break;
-                case Outputs:
-                    cs.addExecutionTime(minorStatusDAO.getDateDiff(job.getId(), GaswMinorStatus.Application, GaswMinorStatus.Outputs));
-                    break;
-                case Finished:
-                    cs.addUploadTime(minorStatusDAO.getDateDiff(job.getId(), GaswMinorStatus.Outputs, GaswMinorStatus.Finished));
-                    break;
-                default:
+    private CommandState getCommandState(String command) {
+
+        CommandState state = commandsMap.get(command);
+        if (state == null) {
+            // started outside of the map, by the thread that published it
+            CommandState created = new CommandState(command, context);
+            state = commandsMap.putIfAbsent(command, created);
+            if (state == null) {
+                state = created;
+                created.start();
             }
-        } catch (DAOException ex) {
-            logger.error("Error updating minor status", ex);
         }
+        return state;
+    }
+
+    /**
+     * Removes the "-[0-9]+.jdl" suffix of a Moteur job ID, without going
+     * through a regular expression.
+     *
+     * @param jobID job ID in the format command-4072786226984043.jdl
+     * @return the command, or the job ID itself when it has no such suffix
+     */
+    private static String getCommand(String jobID) {
+
+        int end = jobID.length() - 4;
+        if (end < 2 || !jobID.endsWith("jdl")) {
+            return jobID;
+        }
+        int i = end - 1;
+        while (i >= 0 && jobID.charAt(i) >= '0' && jobID.charAt(i) <= '9') {
+            i--;
+        }
+        if (i < 0 || i == end - 1 || jobID.charAt(i) != '-') {
+            return jobID;
+        }
+        return jobID.substring(0, i);
     }
 
     @Override
@@ -159,5 +201,8 @@ public class HealingListener implements ListenerPlugin {
         for (CommandState cs : commandsMap.values()) {
             cs.terminate();
         }
+        context.getScheduler().shutdown();
+        context.getJournal().close();
+        HealingTuning.unregister();
     }
 }
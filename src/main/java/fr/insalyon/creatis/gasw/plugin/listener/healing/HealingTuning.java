@@ -0,0 +1,173 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing;
+
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.HealingContext;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runtime tuning of the configuration of a healing context, registered in
+ * the platform MBean server as
+ * fr.insalyon.creatis.gasw.plugin.listener.healing:type=Tuning
+ */
+public class HealingTuning implements HealingTuningMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(HealingTuning.class);
+    private static final String NAME = "fr.insalyon.creatis.gasw.plugin.listener.healing:type=Tuning";
+    private final HealingContext context;
+
+    public HealingTuning(HealingContext context) {
+        this.context = context;
+    }
+
+    /**
+     * @param context whose configuration is read and tuned
+     */
+    public static void register(HealingContext context) {
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new HealingTuning(context), name);
+        } catch (JMException ex) {
+            logger.warn("Unable to register the healing tuning: {}", ex.getMessage());
+        }
+    }
+
+    public static void unregister() {
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException ex) {
+            logger.warn("Unable to unregister the healing tuning: {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public int getSleepTime() {
+        return context.getConfiguration().getSleepTime() / 1000;
+    }
+
+    @Override
+    public void setSleepTime(int sleepTime) {
+
+        check(sleepTime > 0, "sleep time must be positive");
+        logger.info("Tuning sleep time to {} s", sleepTime);
+        context.tune(config -> config.setSleepTime(sleepTime * 1000));
+    }
+
+    @Override
+    public double getBlockedCoefficient() {
+        return context.getConfiguration().getBlockedCoefficient();
+    }
+
+    @Override
+    public void setBlockedCoefficient(double blockedCoefficient) {
+
+        check(blockedCoefficient > 0, "blocked coefficient must be positive");
+        logger.info("Tuning blocked coefficient to {}", blockedCoefficient);
+        context.tune(config -> config.setBlockedCoefficient(blockedCoefficient));
+    }
+
+    @Override
+    public int getMaxReplicas() {
+        return context.getConfiguration().getMaxReplicas();
+    }
+
+    @Override
+    public void setMaxReplicas(int maxReplicas) {
+
+        check(maxReplicas >= 1, "max replicas must be at least 1");
+        logger.info("Tuning max replicas to {}", maxReplicas);
+        context.tune(config -> config.setMaxReplicas(maxReplicas));
+    }
+
+    @Override
+    public double getMaxErrorJobPercentage() {
+        return context.getConfiguration().getMaxErrorJobPercentage();
+    }
+
+    @Override
+    public void setMaxErrorJobPercentage(double maxErrorJobPercentage) {
+
+        check(maxErrorJobPercentage >= 0 && maxErrorJobPercentage <= 100, "percentage must be in [0, 100]");
+        logger.info("Tuning max error job percentage to {}", maxErrorJobPercentage);
+        context.tune(config -> config.setMaxErrorJobPercentage(maxErrorJobPercentage));
+    }
+
+    @Override
+    public double getMaxErrorInvocationPercentage() {
+        return context.getConfiguration().getMaxErrorInvocationPercentage();
+    }
+
+    @Override
+    public void setMaxErrorInvocationPercentage(double maxErrorInvocationPercentage) {
+
+        check(maxErrorInvocationPercentage >= 0 && maxErrorInvocationPercentage <= 100,
+                "percentage must be in [0, 100]");
+        logger.info("Tuning max error invocation percentage to {}", maxErrorInvocationPercentage);
+        context.tune(config -> config.setMaxErrorInvocationPercentage(maxErrorInvocationPercentage));
+    }
+
+    @Override
+    public int getMinInvocations() {
+        return context.getConfiguration().getMinInvocations();
+    }
+
+    @Override
+    public void setMinInvocations(int minInvocations) {
+
+        check(minInvocations >= 0, "min invocations must not be negative");
+        logger.info("Tuning min invocations to {}", minInvocations);
+        context.tune(config -> config.setMinInvocations(minInvocations));
+    }
+
+    private static void check(boolean valid, String message) {
+
+        if (!valid) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.dao;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.bean.JobMinorStatus;
+import fr.insalyon.creatis.gasw.dao.DAOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits the number of concurrent calls to another DAO, so that parallel
+ * healing cycles do not exhaust the GASW connection pool.
+ */
+public class BoundedHealingDAO implements HealingDAO {
+
+    private final HealingDAO dao;
+    private final Semaphore permits;
+
+    /**
+     * @param dao
+     * @param maxConcurrentCalls
+     */
+    public BoundedHealingDAO(HealingDAO dao, int maxConcurrentCalls) {
+
+        this.dao = dao;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+    }
+
+    @Override
+    public List<Job> getActiveJobs() throws DAOException {
+        return call(dao::getActiveJobs);
+    }
+
+    @Override
+    public List<Job> getActiveJobsByCommand(String command) throws DAOException {
+        return call(() -> dao.getActiveJobsByCommand(command));
+    }
+
+    @Override
+    public List<Job> getJobsByCommand(String command) throws DAOException {
+        return call(() -> dao.getJobsByCommand(command));
+    }
+
+    @Override
+    public List<Job> getFailedByCommand(String command) throws DAOException {
+        return call(() -> dao.getFailedByCommand(command));
+    }
+
+    @Override
+    public List<Integer> getInvocationsByCommand(String command) throws DAOException {
+        return call(() -> dao.getInvocationsByCommand(command));
+    }
+
+    @Override
+    public long getNumberOfCompletedJobsByInvocationID(int invocationID) throws DAOException {
+        return call(() -> dao.getNumberOfCompletedJobsByInvocationID(invocationID));
+    }
+
+    @Override
+    public List<JobMinorStatus> getExecutionMinorStatus(String jobID) throws DAOException {
+        return call(() -> dao.getExecutionMinorStatus(jobID));
+    }
+
+    @Override
+    public void update(Job job) throws DAOException {
+        call(() -> {
+            dao.update(job);
+            return null;
+        });
+    }
+
+    @Override
+    public void update(Collection<Job> jobs) throws DAOException {
+        call(() -> {
+            dao.update(jobs);
+            return null;
+        });
+    }
+
+    private <T> T call(DAOCall<T> call) throws DAOException {
+
+        acquire();
+        try {
+            return call.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Waits for a permit. An interrupted wait fails the call and keeps the
+     * thread interrupted.
+     */
+    private void acquire() throws DAOException {
+
+        try {
+            permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DAOException(ex);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.dao;
+
+import java.time.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the healing from loading a database that is already slow or
+ * failing, for all the commands at once.
+ *
+ * The latency of the DAO calls is averaged with an exponential moving
+ * average, which halves every open time without calls; above the target
+ * latency, the delay between healing cycles is stretched in proportion. After a number of consecutive failures the
+ * circuit opens: the cycles are skipped and the DAO calls fail fast. Once
+ * the open time has elapsed, the circuit is half open and a single probe
+ * call is let through; its failure reopens the circuit for twice as long,
+ * its success closes it. The outcome of the calls started before the
+ * circuit opened is ignored. After closing, the cycles start at the maximum
+ * stretch, halved every open time.
+ */
+public class DAOGovernor {
+
+    private static final Logger logger = LoggerFactory.getLogger(DAOGovernor.class);
+    private static final double LATENCY_WEIGHT = 0.2;
+    private static final int MAX_OPEN_TIME_FACTOR = 16;
+
+    /**
+     * Governor that never stretches nor skips the cycles.
+     */
+    public static final DAOGovernor NONE = new DAOGovernor(0, 1, Integer.MAX_VALUE, 0, Clock.systemUTC());
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final long latencyTarget;
+    private final double maxStretch;
+    private final int failureThreshold;
+    private final long openTime;
+    private final Clock clock;
+    private double averageLatency;
+    private long lastLatencyTime;
+    private int consecutiveFailures;
+    private State state;
+    // incremented each time the circuit opens or a probe is let through
+    private long epoch;
+    private long openUntil;
+    private long probeStart;
+    private long currentOpenTime;
+    private long closedAt;
+    private boolean recovering;
+
+    /**
+     * @param latencyTarget average latency above which the cycles are
+     * stretched, in milliseconds, or 0 to never stretch them
+     * @param maxStretch maximum factor applied to the cycle delays
+     * @param failureThreshold number of consecutive failures opening the
+     * circuit
+     * @param openTime time during which the circuit stays open, in
+     * milliseconds
+     * @param clock
+     */
+    public DAOGovernor(long latencyTarget, double maxStretch, int failureThreshold, long openTime, Clock clock) {
+
+        this.latencyTarget = latencyTarget;
+        this.maxStretch = Math.max(1, maxStretch);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openTime = openTime;
+        this.clock = clock;
+        this.state = State.CLOSED;
+        this.currentOpenTime = openTime;
+    }
+
+    /**
+     * @return true if the healing may use the database: the circuit is
+     * closed, or its open time has elapsed and no probe is running
+     */
+    public synchronized boolean isAvailable() {
+
+        switch (state) {
+            case OPEN:
+                return clock.millis() >= openUntil;
+            case HALF_OPEN:
+                return isProbeExpired();
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @return time until the circuit may close, in milliseconds, or 0
+     */
+    public synchronized long getRemainingOpenTime() {
+        return state == State.OPEN ? Math.max(0, openUntil - clock.millis()) : 0;
+    }
+
+    /**
+     * Lets a DAO call through. While the circuit is half open, only one call
+     * is, as a probe.
+     *
+     * @return the ticket to pass to {@link #success} or {@link #failure}, or
+     * -1 if the call must fail fast
+     */
+    public synchronized long acquire() {
+
+        if (state == State.CLOSED) {
+            return epoch;
+        }
+        if (state == State.OPEN && clock.millis() < openUntil
+                || state == State.HALF_OPEN && !isProbeExpired()) {
+            return -1;
+        }
+        // first call after the open time, or after a probe that never returned
+        state = State.HALF_OPEN;
+        probeStart = clock.millis();
+        return ++epoch;
+    }
+
+    private boolean isProbeExpired() {
+        return clock.millis() - probeStart >= currentOpenTime;
+    }
+
+    /**
+     * @return the factor to apply to the delay before the next cycle, from 1
+     * to the maximum stretch
+     */
+    public synchronized double getDelayFactor() {
+
+        double factor = 1;
+        if (latencyTarget > 0) {
+            factor = getAverageLatency() / latencyTarget;
+        }
+        if (recovering && openTime > 0) {
+            long elapsed = clock.millis() - closedAt;
+            double recovery = maxStretch / Math.pow(2, (double) elapsed / openTime);
+            if (recovery <= 1) {
+                recovering = false;
+            }
+            factor = Math.max(factor, recovery);
+        }
+        return Math.max(1, Math.min(maxStretch, factor));
+    }
+
+    /**
+     * @return the average latency of the DAO calls, in milliseconds
+     */
+    public synchronized double getAverageLatency() {
+
+        if (openTime <= 0) {
+            return averageLatency;
+        }
+        // a database left alone recovers, even if no call measures it
+        return averageLatency * Math.pow(0.5, (double) (clock.millis() - lastLatencyTime) / openTime);
+    }
+
+    private void addLatency(long nanos) {
+
+        double average = getAverageLatency();
+        averageLatency = average + LATENCY_WEIGHT * (nanos / 1e6 - average);
+        lastLatencyTime = clock.millis();
+    }
+
+    /**
+     * Records a successful call.
+     *
+     * @param ticket returned by {@link #acquire()} before the call
+     * @param nanos duration of the call
+     */
+    public synchronized void success(long ticket, long nanos) {
+
+        addLatency(nanos);
+        if (ticket != epoch) {
+            return;
+        }
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            currentOpenTime = openTime;
+            closedAt = clock.millis();
+            recovering = true;
+            logger.info("Healing database access restored, cycles resume at a slower pace");
+        }
+    }
+
+    /**
+     * Records a failed call.
+     *
+     * @param ticket returned by {@link #acquire()} before the call
+     * @param nanos duration of the call
+     */
+    public synchronized void failure(long ticket, long nanos) {
+
+        addLatency(nanos);
+        if (ticket != epoch) {
+            return;
+        }
+        consecutiveFailures++;
+        long now = clock.millis();
+        if (state == State.HALF_OPEN) {
+            currentOpenTime = Math.min(currentOpenTime * 2, openTime * MAX_OPEN_TIME_FACTOR);
+            open(now);
+            logger.warn("Healing database access still failing, suspending the healing cycles for {} s",
+                    currentOpenTime / 1000);
+        } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            open(now);
+            logger.warn("{} consecutive healing database failures, suspending the healing cycles for {} s",
+                    consecutiveFailures, currentOpenTime / 1000);
+        }
+    }
+
+    private void open(long now) {
+
+        state = State.OPEN;
+        openUntil = now + currentOpenTime;
+        epoch++;
+    }
+}
@@ -0,0 +1,121 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.dao;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.bean.JobMinorStatus;
+import fr.insalyon.creatis.gasw.dao.DAOException;
+import fr.insalyon.creatis.gasw.dao.DAOFactory;
+import fr.insalyon.creatis.gasw.dao.JobDAO;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Healing operations backed by the GASW database.
+ */
+public class GaswHealingDAO implements HealingDAO {
+
+    @Override
+    public List<Job> getActiveJobs() throws DAOException {
+        return DAOFactory.getDAOFactory().getJobDAO().getActiveJobs();
+    }
+
+    /**
+     * GASW has no query of the active jobs of a command, they are filtered
+     * from all the active jobs.
+     */
+    @Override
+    public List<Job> getActiveJobsByCommand(String command) throws DAOException {
+
+        List<Job> jobs = new ArrayList<>();
+        for (Job job : getActiveJobs()) {
+            if (command.equals(job.getCommand())) {
+                jobs.add(job);
+            }
+        }
+        return jobs;
+    }
+
+    @Override
+    public List<Job> getJobsByCommand(String command) throws DAOException {
+        return DAOFactory.getDAOFactory().getJobDAO().getJobsByCommand(command);
+    }
+
+    @Override
+    public List<Job> getFailedByCommand(String command) throws DAOException {
+        return DAOFactory.getDAOFactory().getJobDAO().getFailedByCommand(command);
+    }
+
+    @Override
+    public List<Integer> getInvocationsByCommand(String command) throws DAOException {
+        return DAOFactory.getDAOFactory().getJobDAO().getInvocationsByCommand(command);
+    }
+
+    @Override
+    public long getNumberOfCompletedJobsByInvocationID(int invocationID) throws DAOException {
+        return DAOFactory.getDAOFactory().getJobDAO().getNumberOfCompletedJobsByInvocationID(invocationID);
+    }
+
+    @Override
+    public List<JobMinorStatus> getExecutionMinorStatus(String jobID) throws DAOException {
+        return DAOFactory.getDAOFactory().getJobMinorStatusDAO().getExecutionMinorStatus(jobID);
+    }
+
+    @Override
+    public void update(Job job) throws DAOException {
+        DAOFactory.getDAOFactory().getJobDAO().update(job);
+    }
+
+    /**
+     * GASW has no batch update, the jobs are written one by one with the same
+     * DAO.
+     */
+    @Override
+    public void update(Collection<Job> jobs) throws DAOException {
+
+        JobDAO jobDAO = DAOFactory.getDAOFactory().getJobDAO();
+        int updated = 0;
+        for (Job job : jobs) {
+            try {
+                jobDAO.update(job);
+            } catch (DAOException ex) {
+                if (updated == 0) {
+                    throw ex;
+                }
+                throw new PartialUpdateException(updated, ex);
+            }
+            updated++;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.dao;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.bean.JobMinorStatus;
+import fr.insalyon.creatis.gasw.dao.DAOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Reports the latency and failures of the calls to another DAO to a
+ * {@link DAOGovernor}, and fails fast while its circuit is open.
+ *
+ * The latency of a query is counted per row returned, so that the load of
+ * a large workflow is not taken for a slow database.
+ */
+public class GovernedHealingDAO implements HealingDAO {
+
+    private final HealingDAO dao;
+    private final DAOGovernor governor;
+
+    public GovernedHealingDAO(HealingDAO dao, DAOGovernor governor) {
+
+        this.dao = dao;
+        this.governor = governor;
+    }
+
+    @Override
+    public List<Job> getActiveJobs() throws DAOException {
+        return query(dao::getActiveJobs);
+    }
+
+    @Override
+    public List<Job> getActiveJobsByCommand(String command) throws DAOException {
+        return query(() -> dao.getActiveJobsByCommand(command));
+    }
+
+    @Override
+    public List<Job> getJobsByCommand(String command) throws DAOException {
+        return query(() -> dao.getJobsByCommand(command));
+    }
+
+    @Override
+    public List<Job> getFailedByCommand(String command) throws DAOException {
+        return query(() -> dao.getFailedByCommand(command));
+    }
+
+    @Override
+    public List<Integer> getInvocationsByCommand(String command) throws DAOException {
+        return query(() -> dao.getInvocationsByCommand(command));
+    }
+
+    @Override
+    public long getNumberOfCompletedJobsByInvocationID(int invocationID) throws DAOException {
+        return call(() -> dao.getNumberOfCompletedJobsByInvocationID(invocationID));
+    }
+
+    @Override
+    public List<JobMinorStatus> getExecutionMinorStatus(String jobID) throws DAOException {
+        return query(() -> dao.getExecutionMinorStatus(jobID));
+    }
+
+    @Override
+    public void update(Job job) throws DAOException {
+        call(() -> {
+            dao.update(job);
+            return null;
+        });
+    }
+
+    @Override
+    public void update(Collection<Job> jobs) throws DAOException {
+        // GASW writes a batch row by row, its latency is counted per row
+        call(() -> {
+            dao.update(jobs);
+            return null;
+        }, result -> jobs.size(), jobs.size());
+    }
+
+    private <T> T call(DAOCall<T> call) throws DAOException {
+        return call(call, result -> 1, 1);
+    }
+
+    private <T extends Collection<?>> T query(DAOCall<T> call) throws DAOException {
+        return call(call, Collection::size, 1);
+    }
+
+    /**
+     * @param rows number of rows of a successful call
+     * @param failedRows number of rows of a failed call
+     */
+    private <T> T call(DAOCall<T> call, ToIntFunction<T> rows, int failedRows) throws DAOException {
+
+        long ticket = governor.acquire();
+        if (ticket < 0) {
+            throw new DAOException("Healing database access suspended after repeated failures");
+        }
+        long start = System.nanoTime();
+        try {
+            T result = call.run();
+            governor.success(ticket, (System.nanoTime() - start) / Math.max(1, rows.applyAsInt(result)));
+            return result;
+        } catch (DAOException | RuntimeException ex) {
+            governor.failure(ticket, (System.nanoTime() - start) / Math.max(1, failedRows));
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.dao;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.bean.JobMinorStatus;
+import fr.insalyon.creatis.gasw.dao.DAOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shares one load of the active jobs of the workflow between the healing
+ * cycles of all the commands, instead of loading them once per command.
+ *
+ * The active jobs are loaded again once they are older than the maximum
+ * age, or after any update or failed call, so that a cycle never sees the
+ * jobs as they were before its own decisions were written. The loads are
+ * serialized with a lock rather than a monitor, which would pin the virtual
+ * thread of the cycle for the duration of the query.
+ */
+public class SharedActiveJobsDAO implements HealingDAO {
+
+    private final HealingDAO dao;
+    private final long maxAge;
+    private final Clock clock;
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile ActiveJobs activeJobs;
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param dao
+     * @param maxAge time during which the loaded active jobs are shared, in
+     * milliseconds
+     * @param clock
+     */
+    public SharedActiveJobsDAO(HealingDAO dao, long maxAge, Clock clock) {
+
+        this.dao = dao;
+        this.maxAge = maxAge;
+        this.clock = clock;
+    }
+
+    @Override
+    public List<Job> getActiveJobs() throws DAOException {
+        return new ArrayList<>(load().jobs);
+    }
+
+    @Override
+    public List<Job> getActiveJobsByCommand(String command) throws DAOException {
+        return new ArrayList<>(load().byCommand.getOrDefault(command, Collections.emptyList()));
+    }
+
+    private ActiveJobs load() throws DAOException {
+
+        ActiveJobs current = activeJobs;
+        if (current != null && clock.millis() - current.time < maxAge) {
+            return current;
+        }
+        loadLock.lock();
+        try {
+            current = activeJobs;
+            if (current == null || clock.millis() - current.time >= maxAge) {
+                long loadGeneration = generation.get();
+                current = new ActiveJobs(clock.millis(), call(dao::getActiveJobs));
+                // an update during the load may not be visible in it
+                if (loadGeneration == generation.get()) {
+                    activeJobs = current;
+                }
+            }
+            return current;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    private void invalidate() {
+
+        generation.incrementAndGet();
+        activeJobs = null;
+    }
+
+    @Override
+    public List<Job> getJobsByCommand(String command) throws DAOException {
+        return call(() -> dao.getJobsByCommand(command));
+    }
+
+    @Override
+    public List<Job> getFailedByCommand(String command) throws DAOException {
+        return call(() -> dao.getFailedByCommand(command));
+    }
+
+    @Override
+    public List<Integer> getInvocationsByCommand(String command) throws DAOException {
+        return call(() -> dao.getInvocationsByCommand(command));
+    }
+
+    @Override
+    public long getNumberOfCompletedJobsByInvocationID(int invocationID) throws DAOException {
+        return call(() -> dao.getNumberOfCompletedJobsByInvocationID(invocationID));
+    }
+
+    @Override
+    public List<JobMinorStatus> getExecutionMinorStatus(String jobID) throws DAOException {
+        return call(() -> dao.getExecutionMinorStatus(jobID));
+    }
+
+    @Override
+    public void update(Job job) throws DAOException {
+
+        try {
+            dao.update(job);
+        } finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void update(Collection<Job> jobs) throws DAOException {
+
+        try {
+            dao.update(jobs);
+        } finally {
+            invalidate();
+        }
+    }
+
+    private <T> T call(DAOCall<T> call) throws DAOException {
+
+        try {
+            return call.run();
+        } catch (DAOException | RuntimeException ex) {
+            // the cycle may have changed shared jobs without writing them
+            invalidate();
+            throw ex;
+        }
+    }
+
+    private static class ActiveJobs {
+
+        private final long time;
+        private final List<Job> jobs;
+        private final Map<String, List<Job>> byCommand;
+
+        ActiveJobs(long time, List<Job> jobs) {
+
+            this.time = time;
+            this.jobs = jobs;
+            this.byCommand = new HashMap<>();
+            for (Job job : jobs) {
+                byCommand.computeIfAbsent(job.getCommand(), c -> new ArrayList<>()).add(job);
+            }
+        }
+    }
+}
@@ -37,8 +37,16 @@ import fr.insalyon.creatis.gasw.bean.*;
 import fr.insalyon.creatis.gasw.dao.*;
 import fr.insalyon.creatis.gasw.execution.*;
 import fr.insalyon.creatis.gasw.plugin.listener.healing.HealingConfiguration;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.DAOGovernor;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.HealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.metrics.CommandMetrics;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,62 +55,192 @@ public class CommandState {
 
     private static final Logger logger = LoggerFactory.getLogger(CommandState.class);
     private String command;
+    private final HealingContext context;
+    private ScheduledFuture<?> nextCycle;
+    private long nextCycleTime;
+    private long cycleGeneration;
+    private boolean cycleRunning;
+    private boolean wakeRequested;
+    private volatile int idleCycles;
     private volatile boolean stop;
     private volatile boolean killAllJobs;
-    private volatile List<Long> setupTimes;
-    private volatile List<Long> inputTimes;
-    private volatile List<Long> executionTimes;
-    private volatile List<Long> outputTimes;
+    private final PhaseStatistics setupTimes;
+    private final PhaseStatistics inputTimes;
+    private final PhaseStatistics executionTimes;
+    private final PhaseStatistics outputTimes;
+    private final SitePhaseStatistics siteTimes;
+    // samples of each phase measured in this run, without the preloaded ones
+    private final AtomicLongArray freshSamples;
+    private final ErrorRates errorRates;
+    private volatile long lastErrorReconcile;
     private volatile double jobErrorRate;
     private volatile double invocationPartialErrorRate;
+    // number of invocations of the command in the database at the last reconcile
+    private volatile int reconciledInvocations;
+    private volatile int lastCycleDAOCalls;
+    private volatile long lastFlushLatency;
+    private volatile KillPipeline killPipeline;
+    // sink of the last cycle, whose unwritten decisions may still be retried
+    private volatile DecisionSink lastSink;
+    private final CommandMetrics metrics;
 
     private Map<String,Long> lastLoggedTimes;
+    // configuration snapshot taken at the start of each cycle
+    private volatile HealingConfiguration config;
+    // whether the last cycle found the command in its tail
+    private volatile boolean tail;
 
-    public CommandState(String command) {
+    public CommandState(String command, HealingContext context) {
 
         this.command = command;
+        this.context = context;
+        this.config = context.getConfiguration();
         this.stop = false;
-        this.setupTimes = new ArrayList<Long>();
-        this.inputTimes = new ArrayList<Long>();
-        this.executionTimes = new ArrayList<Long>();
-        this.outputTimes = new ArrayList<Long>();
+        this.setupTimes = PhaseStatistics.create(context.getClock(), config);
+        this.inputTimes = PhaseStatistics.create(context.getClock(), config);
+        this.executionTimes = PhaseStatistics.create(context.getClock(), config);
+        this.outputTimes = PhaseStatistics.create(context.getClock(), config);
+        this.siteTimes = config.isStatsSite()
+                ? new SitePhaseStatistics(config, context.getClock())
+                : null;
+        this.freshSamples = new AtomicLongArray(4);
+        this.errorRates = new ErrorRates(context.getClock(), config.getErrorOutcomeMaxAge());
+        // the counters start from the database, e.g. after a plugin reload
+        this.lastErrorReconcile = context.getClock().millis() - config.getErrorReconcileTime();
         this.jobErrorRate = 0.0 ;
         this.invocationPartialErrorRate = 0.0 ;
         this.killAllJobs = false;
 
         this.lastLoggedTimes = new HashMap<>();
 
-        new ReplicationMonitor().start();
+        this.metrics = new CommandMetrics(command);
+    }
+
+    /**
+     * Preloads the statistics, registers the metrics and schedules the first
+     * cycle. Called once, after the state is published.
+     */
+    public void start() {
+
+        preloadStatistics();
+        context.getMetrics().register(metrics);
+        scheduleNextCycle(context.getScheduler().jitter(config.getSleepTime()));
     }
 
     public void replicateJobs() {
 
+        if (lastSink != null && lastSink.isRetrying()) {
+            // deciding again from the database would repeat the unwritten decisions
+            logger.info("Decisions of {} still being written, skipping the healing cycle", command);
+            return;
+        }
         try {
-            long setupMedian = getMedianValue(setupTimes);
-            long inputMedian = getMedianValue(inputTimes);
-            long executionMedian = getMedianValue(executionTimes);
-            long outputMedian = getMedianValue(outputTimes);
+            long setupMedian = setupTimes.getMedian();
+            long inputMedian = inputTimes.getMedian();
+            long executionMedian = executionTimes.getMedian();
+            long outputMedian = outputTimes.getMedian();
             logTimesIfNecessary(setupMedian, inputMedian, executionMedian, outputMedian);
 
-            JobDAO jobDAO = DAOFactory.getDAOFactory().getJobDAO();
-            for (Job runningJob : jobDAO.getRunningByCommand(command)) {
-
-                List<Job> activeJobs = jobDAO.getActiveJobsByInvocationID(runningJob.getInvocationID());
-                List<Job> failedJobs = jobDAO.getFailedJobsByInvocationID(runningJob.getInvocationID());
+            CycleSnapshot snapshot = CycleSnapshot.load(context.getDAO(), context.getTimelines(), command);
+            DecisionSink sink = new DecisionSink(config.getUpdateRetries(), context.getScheduler(), metrics);
+            lastSink = sink;
+            idleCycles = snapshot.getRunningInvocations().isEmpty() ? idleCycles + 1 : 0;
+            updateTail(snapshot.getActiveInvocations());
+            long[] medians = {setupMedian, inputMedian, executionMedian, outputMedian};
+            InvocationDecisions[] decisions = evaluateInvocations(snapshot, medians);
+
+            // merged in invocation order, whatever the worker that evaluated them
+            int jobsEvaluated = 0;
+            List<JobPhases> candidates = new ArrayList<>();
+            for (InvocationDecisions invocationDecisions : decisions) {
+                jobsEvaluated += invocationDecisions.jobsEvaluated;
+                for (Job job : invocationDecisions.killedReplicas) {
+                    sink.record(job);
+                }
+                if (invocationDecisions.candidate != null) {
+                    candidates.add(invocationDecisions.candidate);
+                }
+            }
+            replicateCandidates(sink, candidates);
+            int replicates = sink.count(GaswStatus.REPLICATE);
+            int killReplicas = sink.count(GaswStatus.KILL_REPLICA);
+            sink.flush(context.getDAO());
+            lastFlushLatency = sink.getFlushLatency();
+            lastCycleDAOCalls = snapshot.getDAOCalls() + sink.getDAOCalls();
+            // the sink adds its own calls
+            metrics.daoCalls(snapshot.getDAOCalls(), snapshot.getDAOTime());
+            metrics.jobsEvaluated(jobsEvaluated, replicates, killReplicas);
+            if (replicates > 0 || killReplicas > 0) {
+                logger.info("Healing cycle of {}: {} replicas, {} replicas killed over {} jobs",
+                        command, replicates, killReplicas, jobsEvaluated);
+            }
+            logger.debug("Healing cycle of {} made {} DAO calls", command, lastCycleDAOCalls);
+        } catch (DAOException ex) {
+            logger.error("Error looking for jobs to replicate: ", ex);
+        }
+    }
 
-                // Only heal if all the active jobs are RUNNING and if
-                // none is an temporary state
+    /**
+     * Evaluates the running invocations, in parallel when configured. Each
+     * invocation is evaluated by a single worker, so its decisions do not
+     * depend on the parallelism.
+     *
+     * @return the decisions of each running invocation, in the order of
+     * {@link CycleSnapshot#getRunningInvocations()}
+     */
+    private InvocationDecisions[] evaluateInvocations(CycleSnapshot snapshot,
+            long[] medians) throws DAOException {
+
+        List<Integer> invocations = snapshot.getRunningInvocations();
+        InvocationDecisions[] decisions = new InvocationDecisions[invocations.size()];
+        int parallelism = Math.min(config.getEvaluationParallelism(), invocations.size());
+        if (parallelism <= 1) {
+            for (int i = 0; i < decisions.length; i++) {
+                decisions[i] = evaluateInvocation(snapshot, invocations.get(i), medians);
+            }
+            return decisions;
+        }
 
-                if (canDoHealingForJobs(activeJobs, failedJobs)) {
-                    // if OK, do the healing on the running jobs
-                    doHealing(activeJobs, failedJobs, setupMedian, inputMedian, executionMedian, outputMedian);
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int worker = 0; worker < parallelism; worker++) {
+            int first = worker;
+            workers.add(() -> {
+                for (int i = first; i < decisions.length; i += parallelism) {
+                    decisions[i] = evaluateInvocation(snapshot, invocations.get(i), medians);
                 }
+                return null;
+            });
+        }
+        try {
+            context.getScheduler().invokeAll(workers);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return new InvocationDecisions[0];
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof DAOException) {
+                throw (DAOException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+        return decisions;
+    }
 
+    private InvocationDecisions evaluateInvocation(CycleSnapshot snapshot,
+            int invocationID, long[] medians) throws DAOException {
 
-            }
-        } catch (DAOException ex) {
-            logger.error("Error looking for jobs to replicate: ", ex);
+        InvocationDecisions decisions = new InvocationDecisions();
+        List<Job> activeJobs = snapshot.getActiveJobs(invocationID);
+        List<Job> failedJobs = snapshot.getFailedJobs(invocationID);
+
+        // Only heal if all the active jobs are RUNNING and if
+        // none is an temporary state
+
+        if (canDoHealingForJobs(snapshot, activeJobs, failedJobs)) {
+            // if OK, do the healing on the running jobs
+            decisions.jobsEvaluated = activeJobs.size();
+            doHealing(snapshot, decisions, activeJobs, failedJobs, medians);
         }
+        return decisions;
     }
 
     private List<Job> filterRunningJobs(List<Job> allInvocationJobs) {
@@ -111,7 +249,7 @@ public class CommandState {
         return runningJobs;
     }
 
-    private boolean canDoHealingForJobs(
+    private boolean canDoHealingForJobs(CycleSnapshot snapshot,
             List<Job> activeJobs, List<Job> failedJobs) throws DAOException {
 
         // do NOT do healing when
@@ -133,7 +271,9 @@ public class CommandState {
         // to do database access only when necessary, check for minor statuses
         // only after checking all jobs internal information
         for (Job job : activeJobs) {
-            if (hasFinished(job)) {
+            long[] timeline = snapshot.getTimeline(job);
+            // the phases of a job missing minor statuses cannot be estimated
+            if (timeline[JobTimelines.FINISHED] != 0 || JobTimelines.isPartial(timeline)) {
                 return false;
             }
         }
@@ -141,66 +281,172 @@ public class CommandState {
         return true;
     }
 
-    private boolean hasFinished(Job job) throws DAOException {
-        JobMinorStatusDAO minorStatusDAO = DAOFactory.getDAOFactory().getJobMinorStatusDAO();
-        List<JobMinorStatus> minorStatuses = minorStatusDAO.getExecutionMinorStatus(job.getId());
-        return minorStatuses.stream().anyMatch(ms -> ms.getStatus() == GaswMinorStatus.Finished);
-    }
-
-    private void doHealing(List<Job> jobs, List<Job> failedJobs,
-                           long setupMedian, long inputMedian,
-                           long executionMedian, long outputMedian) {
+    private void doHealing(CycleSnapshot snapshot, InvocationDecisions decisions,
+                           List<Job> jobs, List<Job> failedJobs, long[] commandMedians) {
         try {
-            double blockedCoeff = HealingConfiguration.getInstance().getBlockedCoefficient();
-            JobDAO jobDAO = DAOFactory.getDAOFactory().getJobDAO();
-
             JobPhases bestJob = null;
 
             for (Job job : jobs) {
-                JobPhases jobPhases = new JobPhases(job, setupMedian,
-                        inputMedian, executionMedian, outputMedian);
+                // each job is estimated against the medians of its own site
+                long[] medians = siteTimes == null ? commandMedians
+                        : siteTimes.getMedians(SitePhaseStatistics.getSite(job), commandMedians);
+                JobPhases jobPhases = new JobPhases(job, snapshot.getTimeline(job), context.getClock(),
+                        medians[SitePhaseStatistics.SETUP], medians[SitePhaseStatistics.INPUT],
+                        medians[SitePhaseStatistics.EXECUTION], medians[SitePhaseStatistics.OUTPUT]);
 
                 if (bestJob == null) {
                     bestJob = jobPhases;
                 } else if (jobPhases.getEstimation() < bestJob.getEstimation()) {
                     JobPhases formerBestJob = bestJob;
                     bestJob = jobPhases;
-                    killReplicaIfNecessary(formerBestJob, bestJob);
+                    killReplicaIfNecessary(decisions, formerBestJob, bestJob);
                 } else {
-                    killReplicaIfNecessary(jobPhases, bestJob);
+                    killReplicaIfNecessary(decisions, jobPhases, bestJob);
                 }
             }
-            if (jobs.size() < HealingConfiguration.getInstance().getMaxReplicas()
-                    && (failedJobs.size() - 1) < GaswConfiguration.getInstance().getDefaultRetryCount()
-                    && bestJob != null && ((double) bestJob.getEstimation())
-                    / (setupMedian + inputMedian + executionMedian + outputMedian) >= blockedCoeff) {
-
-                Job job = bestJob.getJob();
-                logger.info("Replicating: {} (jobEstimation: {}) ", job.getId(), bestJob.getEstimation());
-                job.setStatus(GaswStatus.REPLICATE);
-                jobDAO.update(job);
+            if (jobs.size() < getMaxReplicas()
+                    && (failedJobs.size() - 1) < config.getDefaultRetryCount()
+                    && bestJob != null && getBlockedRatio(bestJob) >= 1) {
+
+                decisions.candidate = bestJob;
             }
-        } catch (DAOException | GaswException ex) {
+        } catch (DAOException ex) {
             logger.error("Error looking for jobs to replicate: ", ex);
         }
     }
 
-    private void killReplicaIfNecessary(
+    /**
+     * The tail of a command is reached when few of its invocations are not
+     * finished. These last invocations decide the makespan, so they are
+     * replicated sooner and more.
+     *
+     * @param unfinishedInvocations number of invocations with active jobs
+     */
+    private void updateTail(int unfinishedInvocations) {
+
+        int invocations = reconciledInvocations;
+        boolean inTail = config.getTailFraction() > 0
+                && invocations >= config.getTailMinInvocations()
+                && unfinishedInvocations <= config.getTailFraction() * invocations;
+        if (inTail != tail) {
+            logger.info("{} the tail of {}: {} of {} invocations not finished", inTail ? "Entering" : "Leaving",
+                    command, unfinishedInvocations, invocations);
+        }
+        tail = inTail;
+    }
+
+    /**
+     * @return the blocked coefficient of the current cycle, never greater
+     * in the tail than outside of it
+     */
+    private double getBlockedCoefficient() {
+        return tail ? Math.min(config.getBlockedCoefficient(), config.getTailBlockedCoefficient())
+                : config.getBlockedCoefficient();
+    }
+
+    /**
+     * @return the maximum number of jobs of an invocation in the current
+     * cycle, never lower in the tail than outside of it
+     */
+    private int getMaxReplicas() {
+        return tail ? Math.max(config.getMaxReplicas(), config.getTailMaxReplicas()) : config.getMaxReplicas();
+    }
+
+    /**
+     * A job is blocked when its estimation exceeds the median duration by the
+     * blocked coefficient, or when its current phase exceeds the phase median
+     * by the coefficient of the phase, if set. The latter catches the stalls
+     * of short phases, which are diluted in the total estimation.
+     *
+     * @return how far the job is blocked, relative to the coefficients, from
+     * 1 on
+     */
+    private double getBlockedRatio(JobPhases phases) {
+
+        double ratio = (double) phases.getEstimation() / phases.getMedianDuration() / getBlockedCoefficient();
+        int phase = phases.getCurrentPhase();
+        double phaseCoeff;
+        switch (phase) {
+            case SitePhaseStatistics.SETUP:
+                phaseCoeff = config.getBlockedSetupCoefficient();
+                break;
+            case SitePhaseStatistics.INPUT:
+                phaseCoeff = config.getBlockedInputCoefficient();
+                break;
+            case SitePhaseStatistics.EXECUTION:
+                phaseCoeff = config.getBlockedExecutionCoefficient();
+                break;
+            case SitePhaseStatistics.OUTPUT:
+                phaseCoeff = config.getBlockedOutputCoefficient();
+                break;
+            default:
+                phaseCoeff = 0;
+        }
+        if (phaseCoeff > 0) {
+            ratio = Math.max(ratio, phases.getOverrun(phase) / phaseCoeff);
+        }
+        return ratio;
+    }
+
+    /**
+     * Replicates the candidates allowed by the replica budget, which ranks
+     * them by blocked ratio against the candidates of the other commands.
+     */
+    private void replicateCandidates(DecisionSink sink, List<JobPhases> candidates) {
+
+        // each ratio is computed once, ties keep the invocation order
+        double[] blockedRatios = new double[candidates.size()];
+        Integer[] order = new Integer[blockedRatios.length];
+        for (int i = 0; i < blockedRatios.length; i++) {
+            blockedRatios[i] = getBlockedRatio(candidates.get(i));
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> Double.compare(blockedRatios[j], blockedRatios[i]));
+        List<JobPhases> sorted = new ArrayList<>(order.length);
+        double[] ratios = new double[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted.add(candidates.get(order[i]));
+            ratios[i] = blockedRatios[order[i]];
+        }
+        candidates = sorted;
+        // also withdraws the candidates deferred by the previous cycle
+        int granted = context.getReplicaBudget().acquire(command, ratios);
+        int deferred = candidates.size() - granted;
+        for (JobPhases candidate : candidates.subList(0, granted)) {
+            Job job = candidate.getJob();
+            logger.debug("Replicating: {} (jobEstimation: {}) ", job.getId(), candidate.getEstimation());
+            context.getJournal().replicate(command, job.getInvocationID(), job.getId(), candidate.getEstimation(),
+                    candidate.getMedianDuration(), candidate.getLastStatusCode(), candidate.getMedians());
+            job.setStatus(GaswStatus.REPLICATE);
+            sink.record(job);
+        }
+        if (deferred > 0) {
+            logger.info("Replica budget exhausted, deferring {} replicas of {}", deferred, command);
+            metrics.replicasDeferred(deferred);
+        }
+    }
+
+    private void killReplicaIfNecessary(InvocationDecisions decisions,
             JobPhases jobToEvaluatePhase,
-            JobPhases bestJobPhase) throws DAOException {
+            JobPhases bestJobPhase) {
         if (jobToEvaluatePhase.getLastStatusCode() >= bestJobPhase.getLastStatusCode()) {
             // do nothing if the job is not in an equal or more advanced state
             return;
         }
-        double blockedCoeff = HealingConfiguration.getInstance().getBlockedCoefficient();
+        double blockedCoeff = config.getBlockedCoefficient();
         if (((double) jobToEvaluatePhase.getEstimation()) / bestJobPhase.getEstimation() >= blockedCoeff) {
             Job jobToEvaluate = jobToEvaluatePhase.getJob();
             Job bestJob = bestJobPhase.getJob();
-            logger.info("Killing replica: {} because {} is better", jobToEvaluate.getId(), bestJob.getId());
-            logger.info("Status: {} vs {}", jobToEvaluatePhase.getLastStatusCode(), bestJobPhase.getLastStatusCode());
-            logger.info("Estimations: {} vs {}",jobToEvaluatePhase.getEstimation(), bestJobPhase.getEstimation());
+            logger.debug("Killing replica: {} because {} is better (status: {} vs {}, estimations: {} vs {})",
+                    jobToEvaluate.getId(), bestJob.getId(),
+                    jobToEvaluatePhase.getLastStatusCode(), bestJobPhase.getLastStatusCode(),
+                    jobToEvaluatePhase.getEstimation(), bestJobPhase.getEstimation());
+            context.getJournal().killReplica(command, jobToEvaluate.getInvocationID(),
+                    jobToEvaluate.getId(), bestJob.getId(),
+                    jobToEvaluatePhase.getEstimation(), bestJobPhase.getEstimation(),
+                    jobToEvaluatePhase.getLastStatusCode(), bestJobPhase.getLastStatusCode());
             jobToEvaluate.setStatus(GaswStatus.KILL_REPLICA);
-            DAOFactory.getDAOFactory().getJobDAO().update(jobToEvaluate);
+            decisions.killedReplicas.add(jobToEvaluate);
         }
     }
 
@@ -214,7 +460,7 @@ public class CommandState {
         } else {
             boolean needToLog = false;
             int percentage =
-                    HealingConfiguration.getInstance().getStatsChangePercentage();
+                    config.getStatsChangePercentage();
             if (isChangeGreaterThanPercentage(
                     lastLoggedTimes.get("setup"), setupMedian, percentage)) {
                 needToLog = true;
@@ -259,101 +505,283 @@ public class CommandState {
             setupMedian, inputMedian, executionMedian,  outputMedian);
     }
 
-    private class ReplicationMonitor extends Thread {
-
-        @Override
-        public void run() {
-
-            while (!stop) {
-                try {
-                    if (killAllJobs) {
-                        killAllJobs();
-                    } else {
-                        if (outputTimes.size() > 1) {
-                            replicateJobs();
-                        }
-                    }
-                    sleep(HealingConfiguration.getInstance().getSleepTime());
-                    
-                } catch (InterruptedException ex) {
-                    logger.error("Error: ", ex);
+    private void runCycle(long generation) {
+
+        long scheduledTime;
+        synchronized (this) {
+            // a cycle that was rescheduled earlier by wake() must not run twice
+            if (stop || generation != cycleGeneration) {
+                return;
+            }
+            cycleRunning = true;
+            scheduledTime = nextCycleTime;
+        }
+        config = context.getConfiguration();
+        DAOGovernor governor = context.getGovernor();
+        if (!governor.isAvailable()) {
+            metrics.cycleSkipped();
+            synchronized (this) {
+                cycleRunning = false;
+                wakeRequested = false;
+                // spread over a cycle, so that the commands do not all probe the database at once
+                scheduleNextCycle(Math.max(getNextCycleDelay(), governor.getRemainingOpenTime())
+                        + context.getScheduler().jitter(config.getSleepTime()));
+            }
+            return;
+        }
+        long start = System.nanoTime();
+        long lag = Math.max(0, context.getClock().millis() - scheduledTime);
+        try {
+            updatePhaseMetrics();
+            if (context.getClock().millis() - lastErrorReconcile
+                    >= config.getErrorReconcileTime()) {
+                reconcileErrorRates();
+            }
+            if (killAllJobs) {
+                killAllJobs();
+            } else {
+                if (outputTimes.getCount() > 1) {
+                    replicateJobs();
                 }
             }
+        } catch (RuntimeException ex) {
+            logger.error("Error: ", ex);
+        } finally {
+            metrics.cycleCompleted((System.nanoTime() - start) / 1000000, lag);
+            synchronized (this) {
+                cycleRunning = false;
+                long delay = wakeRequested
+                        ? config.getAdaptiveMinSleepTime()
+                        : getNextCycleDelay();
+                scheduleNextCycle((long) (delay * governor.getDelayFactor()));
+                wakeRequested = false;
+            }
         }
     }
 
-    private long getMedianValue(List<Long> list) {
-        Collections.sort(list);
-        if (list.size() % 2 == 1) {
-            return list.get(list.size() / 2);
+    private void updatePhaseMetrics() {
 
-        } else {
-            int index = list.size() / 2;
-            return (list.get(index - 1) + list.get(index)) / 2;
+        metrics.setPhaseQuantiles("setup", setupTimes.getMedian(), setupTimes.getP90(), setupTimes.getP99());
+        metrics.setPhaseQuantiles("input", inputTimes.getMedian(), inputTimes.getP90(), inputTimes.getP99());
+        metrics.setPhaseQuantiles("execution", executionTimes.getMedian(), executionTimes.getP90(), executionTimes.getP99());
+        metrics.setPhaseQuantiles("output", outputTimes.getMedian(), outputTimes.getP90(), outputTimes.getP99());
+    }
+
+    private synchronized void scheduleNextCycle(long delay) {
+
+        if (!stop) {
+            long generation = ++cycleGeneration;
+            nextCycleTime = context.getClock().millis() + delay;
+            nextCycle = context.getScheduler().schedule(() -> runCycle(generation), delay);
+        }
+    }
+
+    /**
+     * In adaptive mode, the delay is a fraction of the shortest phase median,
+     * doubled for each consecutive cycle without running jobs.
+     *
+     * @return the delay before the next healing cycle, in milliseconds
+     */
+    private long getNextCycleDelay() {
+
+        if (!config.isAdaptive()) {
+            return config.getSleepTime();
+        }
+        long shortestMedian = Long.MAX_VALUE;
+        for (PhaseStatistics phase : new PhaseStatistics[]{setupTimes, inputTimes, executionTimes, outputTimes}) {
+            long median = phase.getMedian();
+            if (median > 0) {
+                shortestMedian = Math.min(shortestMedian, median);
+            }
+        }
+        long delay = shortestMedian == Long.MAX_VALUE
+                ? config.getSleepTime()
+                : (long) (shortestMedian * config.getAdaptiveMedianRatio());
+        delay <<= Math.min(idleCycles, 10);
+        return Math.max(config.getAdaptiveMinSleepTime(), Math.min(config.getAdaptiveMaxSleepTime(), delay));
+    }
+
+    /**
+     * Brings the next healing cycle forward to the minimum adaptive delay,
+     * when a listener event may require a healing decision. Does nothing
+     * when the adaptive mode is disabled or the database is under pressure.
+     */
+    public synchronized void wake() {
+
+        HealingConfiguration config = context.getConfiguration();
+        // no early cycle while the database is slow or failing
+        if (stop || !config.isAdaptive() || context.getGovernor().getDelayFactor() > 1
+                || !context.getGovernor().isAvailable()) {
+            return;
+        }
+        idleCycles = 0;
+        if (cycleRunning) {
+            wakeRequested = true;
+        } else if (nextCycleTime - context.getClock().millis() > config.getAdaptiveMinSleepTime()) {
+            if (nextCycle != null) {
+                nextCycle.cancel(false);
+            }
+            scheduleNextCycle(config.getAdaptiveMinSleepTime());
         }
     }
 
-    public void addSetupTime(long time) {
+    public void addSetupTime(String site, long time) {
+
         this.setupTimes.add(time);
+        freshSamples.incrementAndGet(SitePhaseStatistics.SETUP);
+        if (siteTimes != null) {
+            siteTimes.add(site, SitePhaseStatistics.SETUP, time);
+        }
     }
 
-    public void addDownloadTime(long time) {
+    public void addDownloadTime(String site, long time) {
+
         this.inputTimes.add(time);
+        freshSamples.incrementAndGet(SitePhaseStatistics.INPUT);
+        if (siteTimes != null) {
+            siteTimes.add(site, SitePhaseStatistics.INPUT, time);
+        }
     }
 
-    public void addExecutionTime(long time) {
+    public void addExecutionTime(String site, long time) {
+
         this.executionTimes.add(time);
+        freshSamples.incrementAndGet(SitePhaseStatistics.EXECUTION);
+        if (siteTimes != null) {
+            siteTimes.add(site, SitePhaseStatistics.EXECUTION, time);
+        }
     }
 
-    public void addUploadTime(long time) {
+    public void addUploadTime(String site, long time) {
+
         this.outputTimes.add(time);
+        freshSamples.incrementAndGet(SitePhaseStatistics.OUTPUT);
+        if (siteTimes != null) {
+            siteTimes.add(site, SitePhaseStatistics.OUTPUT, time);
+        }
     }
 
-    private void computeJobErrorRate() throws DAOException {
-        JobDAO jobDAO = DAOFactory.getDAOFactory().getJobDAO();
-        this.jobErrorRate = 100.0 * jobDAO.getFailedByCommand(this.command).size() / jobDAO.getJobsByCommand(this.command).size();
-        logger.info("Updated the jobErrorRate to {}", this.jobErrorRate);
+    /**
+     * @return the number of database calls made by the last healing cycle
+     */
+    public int getLastCycleDAOCalls() {
+        return lastCycleDAOCalls;
+    }
 
+    /**
+     * @return the time taken to write the decisions of the last healing
+     * cycle, in milliseconds
+     */
+    public long getLastFlushLatency() {
+        return lastFlushLatency;
     }
 
-    private void computeInvocationPartialErrorRate() throws DAOException {
-        // TODO : after further analysis, also consider jobs running for more than MAX hours when computing invocationPartialErrorRate
-        int failures = 0;
-        JobDAO jobDAO = DAOFactory.getDAOFactory().getJobDAO();
-        List<Integer> invocationIDs = jobDAO.getInvocationsByCommand(this.command);
-        for (int invocation : invocationIDs) {
-            if (jobDAO.getFailedJobsByInvocationID(invocation).size() >= 1) {
-                failures++;
-            }
+    public CommandMetrics getMetrics() {
+        return metrics;
+    }
+
+    public PhaseStatistics getSetupTimes() {
+        return setupTimes;
+    }
+
+    public PhaseStatistics getInputTimes() {
+        return inputTimes;
+    }
+
+    public PhaseStatistics getExecutionTimes() {
+        return executionTimes;
+    }
+
+    public PhaseStatistics getOutputTimes() {
+        return outputTimes;
+    }
+
+    public void jobSubmitted(Job job) {
+
+        errorRates.jobSubmitted(job);
+        idleCycles = 0;
+    }
+
+    /**
+     * @param jobID Moteur job ID, in the format command-4072786226984043.jdl
+     * @param failed
+     */
+    public void jobFinished(String jobID, boolean failed) {
+
+        errorRates.jobFinished(jobID, failed);
+        if (failed) {
+            updateErrorRatesAndKillDecision();
         }
-        this.invocationPartialErrorRate = 100.0 * failures / invocationIDs.size();
-        logger.info("Updated the invocationPartialErrorRate to {}", this.invocationPartialErrorRate);
+        // the other replicas of the invocation may have to be killed
+        wake();
+    }
 
+    private void reconcileErrorRates() {
+
+        // TODO : after further analysis, also consider jobs running for more than MAX hours when computing invocationPartialErrorRate
+        try {
+            HealingDAO dao = context.getDAO();
+            long loadTime = context.getClock().millis();
+            long start = System.nanoTime();
+            List<Job> allJobs = dao.getJobsByCommand(this.command);
+            List<Job> failedJobs = dao.getFailedByCommand(this.command);
+            List<Integer> invocations = dao.getInvocationsByCommand(this.command);
+            metrics.daoCalls(3, System.nanoTime() - start);
+            errorRates.reconcile(allJobs, failedJobs, invocations, loadTime);
+            reconciledInvocations = invocations.size();
+            updateErrorRatesAndKillDecision();
+        } catch (DAOException ex) {
+            logger.error("Error computing error rates", ex);
+        } finally {
+            lastErrorReconcile = context.getClock().millis();
+        }
     }
 
-    public void updateErrorRatesAndKillDecision() throws DAOException {
-        computeJobErrorRate();
-        computeInvocationPartialErrorRate();
-        if (DAOFactory.getDAOFactory().getJobDAO().getInvocationsByCommand(this.command).size() >= HealingConfiguration.getInstance().getMinInvocations() ) {
-            if (this.jobErrorRate >= HealingConfiguration.getInstance().getMaxErrorJobPercentage() ||
-                    this.invocationPartialErrorRate >= HealingConfiguration.getInstance().getMaxErrorInvocationPercentage()) {
-                this.killAllJobs = true;
+    public void updateErrorRatesAndKillDecision() {
+        HealingConfiguration config = context.getConfiguration();
+        this.jobErrorRate = errorRates.getJobErrorRate();
+        this.invocationPartialErrorRate = errorRates.getInvocationErrorRate();
+        logger.debug("Updated the jobErrorRate to {} and the invocationPartialErrorRate to {}",
+                this.jobErrorRate, this.invocationPartialErrorRate);
+        boolean failing = false;
+        if (errorRates.getInvocations() >= config.getMinInvocations() ) {
+            if (this.jobErrorRate >= config.getMaxErrorJobPercentage() ||
+                    this.invocationPartialErrorRate >= config.getMaxErrorInvocationPercentage()) {
+                failing = true;
                 logger.info("Attention, updating killing decision to true. Nm min invocations are {} , job error rate is {} and invocation error rate is {}",
-                    HealingConfiguration.getInstance().getMinInvocations(), this.jobErrorRate, this.invocationPartialErrorRate);
+                    config.getMinInvocations(), this.jobErrorRate, this.invocationPartialErrorRate);
+            }
+        }
+        SequentialErrorTest sequentialTest = config.getSequentialErrorTest();
+        if (!failing && sequentialTest != null) {
+            int failedJobs = errorRates.getResolvedFailures();
+            int succeededJobs = errorRates.getResolvedSuccesses();
+            if (sequentialTest.isFailing(failedJobs, succeededJobs)) {
+                failing = true;
+                logger.info("Attention, updating killing decision to true. The sequential test concluded after {} failed and {} successful jobs",
+                        failedJobs, succeededJobs);
             }
         }
+        if (failing) {
+            if (!this.killAllJobs) {
+                context.getJournal().killAll(command, jobErrorRate, invocationPartialErrorRate,
+                        errorRates.getInvocations());
+            }
+            this.killAllJobs = true;
+        }
+        metrics.setErrorRates(jobErrorRate, invocationPartialErrorRate, killAllJobs);
 
     }
 
     private void killAllJobs() {
         logger.info("Killing all jobs of type {}", this.command);
         try {
-            JobDAO jobDAO = DAOFactory.getDAOFactory().getJobDAO();
-            List<Integer> invocationIDs = jobDAO.getInvocationsByCommand(this.command);
-            for (int invocation : invocationIDs) {
-                killInvocationJobs(invocation);
+            if (killPipeline == null) {
+                killPipeline = new KillPipeline(command, context.getNotifier(), context.getJournal(),
+                        context.getScheduler(), metrics, config.getKillParallelism(),
+                        config.getUpdateRetries());
             }
-            if(jobDAO.getActiveJobs().isEmpty()){
+            if (killPipeline.run(context.getDAO())) {
                 //This is needed for certain Moteur workflows (e.g., GATE) for which the workflow is not completed when there are no jobs left
                 //TODO: remove this when the completion issue is fixed on the workflow side
                 logger.info("Attention, no active jobs left, stopping the healing now.");
@@ -364,73 +792,64 @@ public class CommandState {
         }
     }
 
-    private void killInvocationJobs (int invocation) {
-        logger.info("Killing jobs of invocation {}", invocation);
-        try {
-            JobDAO jobDAO = DAOFactory.getDAOFactory().getJobDAO();
-            GaswStatus status = GaswStatus.KILL;
-            List<Job> activeJobs = jobDAO.getActiveJobsByInvocationID(invocation);
-            if ((activeJobs != null) && (!activeJobs.isEmpty())) {
-                for (Job job : activeJobs) {
-                    job.setStatus(status);
-                    job.setBeingKilled(true);
-                    jobDAO.update(job);
-                    logger.info("Setting status of job {} to {}", job.getId(), status);
-                    //all subsequent jobs are replica, so kill them as such
-                    status = GaswStatus.KILL_REPLICA;
-                }
-            } else {
-                if (jobDAO.getNumberOfCompletedJobsByInvocationID(invocation) == 0) {
-                    handleHeldJobs(invocation);
+    /**
+     * Starts from the statistics of the previous runs of the command, if
+     * they were saved.
+     */
+    private void preloadStatistics() {
+
+        PhaseStatisticsStore store = context.getStatisticsStore();
+        if (store != null) {
+            try {
+                if (store.preload(command, config.getStatsPriorWeight(),
+                        setupTimes, inputTimes, executionTimes, outputTimes)) {
+                    logger.info("Preloaded the phase statistics of {}", command);
                 }
+            } catch (IOException | RuntimeException ex) {
+                logger.warn("Unable to preload the phase statistics of {}: {}", command, ex.getMessage());
             }
-
-        } catch (DAOException ex) {
-            logger.error("Error killing jobs for invocation: {}", invocation, ex);
         }
     }
 
-    private void handleHeldJobs (int invocationID){
-        logger.info("Handle Held jobs for invocation {}", invocationID);
-        try {
-            JobDAO jobDAO = DAOFactory.getDAOFactory().getJobDAO();
-            List<Job> failedJobs = jobDAO.getFailedJobsByInvocationID(invocationID);
-            if ((failedJobs!=null) && (!failedJobs.isEmpty())) {
-                for (Job job : failedJobs) {
-                    GaswStatus jobStatus = job.getStatus();
-                    if ((jobStatus == GaswStatus.ERROR_HELD) || (jobStatus == GaswStatus.STALLED_HELD)) {
-                        GaswStatus newStatus = GaswStatus.ERROR;
-                        GaswExitCode exitCode = GaswExitCode.EXECUTION_FAILED;
-                        if (jobStatus == GaswStatus.STALLED_HELD) {
-                            newStatus = GaswStatus.STALLED;
-                            exitCode = GaswExitCode.EXECUTION_STALLED;
-                        }
-                        job.setBeingKilled(true);
-                        job.setStatus(newStatus);
-                        jobDAO.update(job);
-                        GaswOutput gaswOutput;
-                        GaswOutput previousGaswOutput = GaswNotification.getInstance().getGaswOutputFromLastFailedJob(job.getFileName() + ".jdl");
-                        if (previousGaswOutput !=  null) {
-                            logger.info("Getting previous StdOutErr files for held job instance: {}", job.getFileName());
-                            gaswOutput = new GaswOutput(job.getFileName() + ".jdl", exitCode, job.getExitMessage(),
-                                    null, previousGaswOutput.getAppStdOut(), previousGaswOutput.getAppStdErr(), previousGaswOutput.getStdOut(), previousGaswOutput.getStdErr());
-                        } else {
-                            logger.info("No previous StdOutErr files for held job instance: {}. Setting it to null.", job.getFileName());
-                            gaswOutput = new GaswOutput(job.getFileName() + ".jdl", exitCode, job.getExitMessage(),
-                                    null, null, null, null, null);
-                        }
-                        GaswNotification.getInstance().addFinishedJob(gaswOutput);
-                        logger.info("Handled Held job {}", job.getId());
-                    }
-                }
+    /**
+     * Saves the statistics if this run measured some output times, with the
+     * number of samples measured, so that a run that only saw the preloaded
+     * prior does not store it again as real samples.
+     */
+    private void saveStatistics() {
+
+        PhaseStatisticsStore store = context.getStatisticsStore();
+        if (store != null && freshSamples.get(SitePhaseStatistics.OUTPUT) > 0) {
+            long[] counts = new long[freshSamples.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = freshSamples.get(i);
+            }
+            try {
+                store.save(command, counts, setupTimes, inputTimes, executionTimes, outputTimes);
+            } catch (IOException ex) {
+                logger.warn("Unable to save the phase statistics of {}: {}", command, ex.getMessage());
             }
-        } catch (DAOException ex) {
-            logger.error("Error handling held job: ", ex);
         }
     }
 
-    public void terminate() {
+    public synchronized void terminate() {
 
         this.stop = true;
+        if (nextCycle != null) {
+            nextCycle.cancel(false);
+        }
+        context.getMetrics().unregister(metrics);
+        context.getReplicaBudget().withdraw(command);
+        saveStatistics();
+    }
+
+    /**
+     * Decisions taken for an invocation during a cycle.
+     */
+    private static class InvocationDecisions {
+
+        private int jobsEvaluated;
+        private final List<Job> killedReplicas = new ArrayList<>();
+        private JobPhases candidate;
     }
 }
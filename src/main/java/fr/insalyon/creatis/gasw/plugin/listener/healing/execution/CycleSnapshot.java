@@ -0,0 +1,179 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.dao.DAOException;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.HealingDAO;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Active and failed jobs of a command, loaded once per healing cycle and
+ * grouped by invocation. The number of database round trips of a cycle
+ * does not depend on the number of running jobs anymore. With the GASW
+ * database, the active jobs are loaded once for all the commands, see
+ * {@link fr.insalyon.creatis.gasw.plugin.listener.healing.dao.SharedActiveJobsDAO}.
+ *
+ * The execution timeline of a job comes from the minor statuses reported to
+ * the listener. It is only loaded from the database, at most once per
+ * cycle, for jobs the listener has not seen from their start. All the
+ * database calls made through the snapshot are counted.
+ */
+public class CycleSnapshot {
+
+    private final HealingDAO dao;
+    private final Map<Integer, List<Job>> activeJobs;
+    private final Map<Integer, List<Job>> failedJobs;
+    private final List<Integer> runningInvocations;
+    private final JobTimelines timelines;
+    private final Map<String, long[]> loadedTimelines;
+    private final AtomicInteger daoCalls;
+    private final AtomicLong daoTime;
+
+    private CycleSnapshot(HealingDAO dao, JobTimelines timelines) {
+
+        this.dao = dao;
+        this.activeJobs = new TreeMap<>();
+        this.failedJobs = new TreeMap<>();
+        this.runningInvocations = new ArrayList<>();
+        this.timelines = timelines;
+        this.loadedTimelines = new ConcurrentHashMap<>();
+        this.daoCalls = new AtomicInteger();
+        this.daoTime = new AtomicLong();
+    }
+
+    /**
+     * Loads the snapshot of a command with two queries.
+     *
+     * @param dao
+     * @param timelines
+     * @param command
+     * @return
+     * @throws DAOException
+     */
+    public static CycleSnapshot load(HealingDAO dao, JobTimelines timelines,
+            String command) throws DAOException {
+
+        CycleSnapshot snapshot = new CycleSnapshot(dao, timelines);
+        snapshot.daoCalls.addAndGet(2);
+
+        long start = System.nanoTime();
+        List<Job> active = dao.getActiveJobsByCommand(command);
+        List<Job> failed = dao.getFailedByCommand(command);
+        snapshot.daoTime.addAndGet(System.nanoTime() - start);
+
+        for (Job job : active) {
+            snapshot.activeJobs.computeIfAbsent(job.getInvocationID(), i -> new ArrayList<>()).add(job);
+        }
+        for (Job job : failed) {
+            snapshot.failedJobs.computeIfAbsent(job.getInvocationID(), i -> new ArrayList<>()).add(job);
+        }
+        for (Map.Entry<Integer, List<Job>> entry : snapshot.activeJobs.entrySet()) {
+            if (entry.getValue().stream().anyMatch(job -> job.getStatus() == GaswStatus.RUNNING)) {
+                snapshot.runningInvocations.add(entry.getKey());
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the invocations having at least one running job, in ascending
+     * order
+     */
+    public List<Integer> getRunningInvocations() {
+        return runningInvocations;
+    }
+
+    /**
+     * @return the number of invocations having at least one active job,
+     * running or not
+     */
+    public int getActiveInvocations() {
+        return activeJobs.size();
+    }
+
+    public List<Job> getActiveJobs(int invocationID) {
+        return activeJobs.getOrDefault(invocationID, Collections.emptyList());
+    }
+
+    public List<Job> getFailedJobs(int invocationID) {
+        return failedJobs.getOrDefault(invocationID, Collections.emptyList());
+    }
+
+    /**
+     * @param job
+     * @return the execution timeline of the job, see {@link JobTimelines},
+     * from the database when the listener did not see all its minor statuses
+     * @throws DAOException
+     */
+    public long[] getTimeline(Job job) throws DAOException {
+
+        long[] timeline = timelines.get(job.getId());
+        if (timeline == null || !JobTimelines.isComplete(timeline)) {
+            timeline = loadedTimelines.get(job.getId());
+            if (timeline == null) {
+                daoCalls.incrementAndGet();
+                long start = System.nanoTime();
+                timeline = JobTimelines.fromMinorStatuses(
+                        dao.getExecutionMinorStatus(job.getId()));
+                daoTime.addAndGet(System.nanoTime() - start);
+                loadedTimelines.put(job.getId(), timeline);
+                timelines.complete(job.getId(), timeline);
+            }
+        }
+        return timeline;
+    }
+
+    /**
+     * @return the number of database calls made through this snapshot
+     */
+    public int getDAOCalls() {
+        return daoCalls.get();
+    }
+
+    /**
+     * @return the time spent in database calls made through this snapshot,
+     * in nanoseconds
+     */
+    public long getDAOTime() {
+        return daoTime.get();
+    }
+}
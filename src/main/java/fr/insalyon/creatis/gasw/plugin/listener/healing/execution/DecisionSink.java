@@ -0,0 +1,238 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.dao.DAOException;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.HealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.PartialUpdateException;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.metrics.CommandMetrics;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the job status transitions decided during a healing cycle and
+ * writes them in one batch at the end of the cycle. A job recorded several
+ * times is written once, with its last status.
+ *
+ * The jobs of a failed batch that were not written are retried on the
+ * scheduler, with a doubling delay, so that the cycle thread does not sleep
+ * and the rows already written are not written again. The decisions still
+ * unwritten after the last retry are dropped: a later cycle takes them again
+ * from the jobs reloaded from the database, once the retries are over.
+ * The database is written outside the monitor of the sink, so that a slow
+ * write does not pin the virtual thread running it.
+ */
+public class DecisionSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(DecisionSink.class);
+    private static final long RETRY_DELAY = 500;
+    private final int maxRetries;
+    private final HealingScheduler scheduler;
+    private final CommandMetrics metrics;
+    private final Map<String, Job> pending;
+    private boolean retrying;
+    private int daoCalls;
+    private int failures;
+    private long flushTime;
+
+    /**
+     * @param maxRetries number of times the unwritten jobs are retried
+     * @param scheduler runs the retries
+     * @param metrics metrics of the command, given the update calls, retries
+     * included, and the dropped jobs
+     */
+    public DecisionSink(int maxRetries, HealingScheduler scheduler, CommandMetrics metrics) {
+
+        this.maxRetries = Math.max(0, maxRetries);
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.pending = new LinkedHashMap<>();
+        this.daoCalls = 0;
+        this.failures = 0;
+        this.flushTime = 0;
+    }
+
+    /**
+     * Records a job whose status was changed by a decision.
+     *
+     * @param job
+     */
+    public synchronized void record(Job job) {
+        pending.put(job.getId(), job);
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * @param status
+     * @return the number of recorded jobs, not yet written, set to the given
+     * status
+     */
+    public synchronized int count(GaswStatus status) {
+
+        int count = 0;
+        for (Job job : pending.values()) {
+            if (job.getStatus() == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the recorded jobs in one batch. The jobs not written are retried
+     * in the background.
+     *
+     * @param dao
+     * @return the number of jobs that could not be written by this call
+     */
+    public int flush(HealingDAO dao) {
+
+        long start = System.nanoTime();
+        List<Job> jobs;
+        synchronized (this) {
+            jobs = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+
+        int recorded = jobs.size();
+        if (recorded > 0 && !write(dao, jobs)) {
+            retry(dao, jobs, 0);
+        }
+        synchronized (this) {
+            flushTime = System.nanoTime() - start;
+        }
+        if (recorded > 0) {
+            logger.debug("Flushed {} decisions in {} ms ({} left)", recorded, getFlushLatency(), jobs.size());
+        }
+        return jobs.size();
+    }
+
+    /**
+     * @return true while unwritten jobs are being retried
+     */
+    public synchronized boolean isRetrying() {
+        return retrying;
+    }
+
+    /**
+     * Writes the jobs, and removes from the list those that were written.
+     *
+     * @return true if all the jobs were written
+     */
+    private boolean write(HealingDAO dao, List<Job> jobs) {
+
+        synchronized (this) {
+            daoCalls++;
+        }
+        long start = System.nanoTime();
+        try {
+            dao.update(jobs);
+            jobs.clear();
+            return true;
+
+        } catch (PartialUpdateException ex) {
+            jobs.subList(0, Math.min(ex.getUpdated(), jobs.size())).clear();
+            logger.warn("Error updating {} jobs: {}", jobs.size(), ex.getMessage());
+        } catch (DAOException ex) {
+            logger.warn("Error updating {} jobs: {}", jobs.size(), ex.getMessage());
+        } finally {
+            metrics.daoCalls(1, System.nanoTime() - start);
+        }
+        return false;
+    }
+
+    private void retry(HealingDAO dao, List<Job> jobs, int attempt) {
+
+        if (attempt >= maxRetries) {
+            logger.error("Unable to update {} jobs, their decisions are left to a later cycle", jobs.size());
+            drop(jobs.size());
+            return;
+        }
+        synchronized (this) {
+            retrying = true;
+        }
+        try {
+            scheduler.schedule(() -> {
+                if (write(dao, jobs)) {
+                    synchronized (this) {
+                        retrying = false;
+                    }
+                } else {
+                    retry(dao, jobs, attempt + 1);
+                }
+            }, RETRY_DELAY << attempt);
+        } catch (RejectedExecutionException ex) {
+            // the plugin is shutting down
+            drop(jobs.size());
+        }
+    }
+
+    private synchronized void drop(int jobs) {
+
+        failures += jobs;
+        metrics.updatesDropped(jobs);
+        retrying = false;
+    }
+
+    /**
+     * @return the number of update calls made, retries included
+     */
+    public synchronized int getDAOCalls() {
+        return daoCalls;
+    }
+
+    /**
+     * @return the number of jobs dropped after all the retries
+     */
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the duration of the last flush, in milliseconds
+     */
+    public synchronized long getFlushLatency() {
+        return flushTime / 1000000;
+    }
+}
@@ -0,0 +1,275 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Job and invocation error counters of a command, maintained from the
+ * listener events so that the error rates cost O(1). The counters can be
+ * reset from the database to fix the events that were missed.
+ */
+public class ErrorRates {
+
+    private final Clock clock;
+    private final long maxAge;
+    private int jobs;
+    private int failedJobs;
+    private final Set<Integer> invocations;
+    private final Set<Integer> failedInvocations;
+    // invocation of the submitted jobs, by Moteur job ID (file name + .jdl)
+    private final Map<String, Integer> pendingJobs;
+    // outcome of the jobs in submission order, up to the first job still
+    // running
+    private final LinkedHashMap<String, Outcome> outcomes;
+    private int resolvedFailures;
+    private int resolvedSuccesses;
+
+    /**
+     * @param clock
+     * @param maxAge time after which a running job is left out of the
+     * resolved counts, in milliseconds, or 0 for no limit
+     */
+    public ErrorRates(Clock clock, long maxAge) {
+
+        this.clock = clock;
+        this.maxAge = maxAge;
+        this.jobs = 0;
+        this.failedJobs = 0;
+        this.invocations = new HashSet<>();
+        this.failedInvocations = new HashSet<>();
+        this.pendingJobs = new HashMap<>();
+        this.outcomes = new LinkedHashMap<>();
+        this.resolvedFailures = 0;
+        this.resolvedSuccesses = 0;
+    }
+
+    public synchronized void jobSubmitted(Job job) {
+
+        jobs++;
+        invocations.add(job.getInvocationID());
+        pendingJobs.put(job.getFileName() + ".jdl", job.getInvocationID());
+        outcomes.put(job.getFileName() + ".jdl", new Outcome(clock.millis()));
+    }
+
+    /**
+     * @param jobID Moteur job ID, in the format command-4072786226984043.jdl
+     * @param failed
+     */
+    public synchronized void jobFinished(String jobID, boolean failed) {
+
+        Integer invocation = pendingJobs.remove(jobID);
+        if (failed) {
+            failedJobs++;
+            if (invocation != null) {
+                failedInvocations.add(invocation);
+            }
+        }
+        resolve(jobID, failed);
+        advance();
+    }
+
+    /**
+     * Replaces the counters by the values computed from the database, and
+     * resolves the jobs that ended without a finished event. The killed and
+     * deleted jobs are left out of the resolved counts, as are the jobs
+     * unknown to the database and those running for longer than the
+     * maximum age, so that they do not block the others.
+     *
+     * @param allJobs jobs of the command
+     * @param failed failed jobs of the command
+     * @param allInvocations invocations of the command
+     * @param loadTime time at which the jobs were loaded, in milliseconds
+     */
+    public synchronized void reconcile(List<Job> allJobs, List<Job> failed, List<Integer> allInvocations,
+            long loadTime) {
+
+        jobs = allJobs.size();
+        failedJobs = failed.size();
+        invocations.clear();
+        invocations.addAll(allInvocations);
+        failedInvocations.clear();
+        for (Job job : failed) {
+            failedInvocations.add(job.getInvocationID());
+            resolve(job.getFileName() + ".jdl", true);
+        }
+        Set<String> known = new HashSet<>();
+        for (Job job : allJobs) {
+            String jobID = job.getFileName() + ".jdl";
+            known.add(jobID);
+            switch (job.getStatus()) {
+                case ERROR:
+                case STALLED:
+                    resolve(jobID, true);
+                    break;
+                case COMPLETED:
+                case CANCELLED:
+                case CANCELLED_REPLICA:
+                    resolve(jobID, false);
+                    break;
+                case KILL:
+                case KILL_REPLICA:
+                case DELETED:
+                    discard(jobID);
+                    break;
+                default:
+            }
+            if (JobTimelines.isTerminal(job.getStatus())) {
+                pendingJobs.remove(jobID);
+            }
+        }
+
+        long now = clock.millis();
+        Iterator<Map.Entry<String, Outcome>> it = outcomes.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Outcome> entry = it.next();
+            Outcome outcome = entry.getValue();
+            if (outcome.failed != null) {
+                continue;
+            }
+            if (outcome.submitted < loadTime && !known.contains(entry.getKey())) {
+                it.remove();
+                pendingJobs.remove(entry.getKey());
+            } else if (maxAge > 0 && now - outcome.submitted > maxAge) {
+                it.remove();
+            }
+        }
+        advance();
+    }
+
+    private void resolve(String jobID, boolean failed) {
+
+        Outcome outcome = outcomes.get(jobID);
+        if (outcome != null && outcome.failed == null) {
+            outcome.failed = failed;
+        }
+    }
+
+    private void discard(String jobID) {
+
+        Outcome outcome = outcomes.get(jobID);
+        if (outcome != null && outcome.failed == null) {
+            outcomes.remove(jobID);
+        }
+    }
+
+    /**
+     * Counts the resolved jobs up to the first job still running.
+     */
+    private void advance() {
+
+        Iterator<Outcome> it = outcomes.values().iterator();
+        while (it.hasNext()) {
+            Outcome outcome = it.next();
+            if (outcome.failed == null) {
+                break;
+            }
+            if (outcome.failed) {
+                resolvedFailures++;
+            } else {
+                resolvedSuccesses++;
+            }
+            it.remove();
+        }
+    }
+
+    /**
+     * @return the number of submitted jobs waiting for their finished event
+     */
+    synchronized int getPendingJobs() {
+        return pendingJobs.size();
+    }
+
+    /**
+     * @return the number of jobs whose outcome is kept, resolved or not
+     */
+    synchronized int getTrackedOutcomes() {
+        return outcomes.size();
+    }
+    public synchronized int getInvocations() {
+        return invocations.size();
+    }
+
+    /**
+     * Failed jobs, counted in submission order up to the first job still
+     * running. Failures usually come before successes, which take the whole
+     * execution, so counting every finished job would overestimate the
+     * error rate at the beginning of a workflow.
+     *
+     * @return
+     */
+    public synchronized int getResolvedFailures() {
+        return resolvedFailures;
+    }
+
+    /**
+     * @return jobs finished without failing, including the cancelled ones,
+     * counted as {@link #getResolvedFailures()}
+     */
+    public synchronized int getResolvedSuccesses() {
+        return resolvedSuccesses;
+    }
+
+    /**
+     * @return percentage of failed jobs
+     */
+    public synchronized double getJobErrorRate() {
+        return jobs == 0 ? 0.0 : 100.0 * failedJobs / jobs;
+    }
+
+    /**
+     * @return percentage of invocations with at least one failed job
+     */
+    public synchronized double getInvocationErrorRate() {
+        return invocations.isEmpty() ? 0.0 : 100.0 * failedInvocations.size() / invocations.size();
+    }
+
+    private static class Outcome {
+
+        private final long submitted;
+        // null while the job is running
+        private Boolean failed;
+
+        private Outcome(long submitted) {
+            this.submitted = submitted;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the healing cycles of every command on executor threads.
+ *
+ * By default the cycles run on a bounded pool of daemon threads. In virtual
+ * mode a single timer thread only dispatches each cycle to its own virtual
+ * thread. The tasks run in parallel within a cycle use virtual threads in
+ * virtual mode, and a cached pool of daemon threads otherwise.
+ */
+public class ExecutorHealingScheduler implements HealingScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorHealingScheduler.class);
+    private static final long SHUTDOWN_TIMEOUT = 5000;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService workers;
+    private final ExecutorService evaluators;
+
+    public ExecutorHealingScheduler(int threads, boolean virtualThreads) {
+
+        if (virtualThreads) {
+            this.timer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("healing-scheduler-"));
+            this.workers = Executors.newThreadPerTaskExecutor(
+                    Thread.ofVirtual().name("healing-cycle-", 0).factory());
+            this.evaluators = workers;
+        } else {
+            this.timer = Executors.newScheduledThreadPool(Math.max(1, threads), new DaemonThreadFactory("healing-scheduler-"));
+            this.workers = null;
+            this.evaluators = Executors.newCachedThreadPool(new DaemonThreadFactory("healing-evaluation-"));
+        }
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, long delay) {
+
+        Runnable run = workers == null ? task : () -> workers.execute(task);
+        return timer.schedule(run, Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long jitter(long period) {
+        return period <= 0 ? 0 : ThreadLocalRandom.current().nextLong(period + 1);
+    }
+
+    @Override
+    public void invokeAll(List<Callable<Void>> tasks) throws InterruptedException, ExecutionException {
+
+        for (Future<Void> future : evaluators.invokeAll(tasks)) {
+            future.get();
+        }
+    }
+
+    /**
+     * Interrupts the running cycles, drops the pending ones and waits for the
+     * threads to exit.
+     */
+    @Override
+    public void shutdown() {
+
+        timer.shutdownNow();
+        evaluators.shutdownNow();
+        try {
+            if (!timer.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)
+                    || !evaluators.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                logger.warn("Healing cycles still running after {} ms", SHUTDOWN_TIMEOUT);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
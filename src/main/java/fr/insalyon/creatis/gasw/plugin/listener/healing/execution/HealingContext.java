@@ -0,0 +1,283 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import fr.insalyon.creatis.gasw.plugin.listener.healing.HealingConfiguration;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.BoundedHealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.DAOGovernor;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.GaswHealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.GovernedHealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.HealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.SharedActiveJobsDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.journal.DecisionJournal;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.journal.NdjsonDecisionJournal;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.metrics.JmxMetricsRegistry;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.metrics.MetricsRegistry;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Services shared by the listener and all the command states. The services
+ * that are not set in the builder are the GASW ones.
+ */
+public class HealingContext {
+
+    private static final Logger logger = LoggerFactory.getLogger(HealingContext.class);
+    private volatile HealingConfiguration configuration;
+    private final HealingScheduler scheduler;
+    private final JobTimelines timelines;
+    private final HealingDAO dao;
+    private final DAOGovernor governor;
+    private final JobNotifier notifier;
+    private final Clock clock;
+    private final MetricsRegistry metrics;
+    private final PhaseStatisticsStore statisticsStore;
+    private final ReplicaBudget replicaBudget;
+    private final DecisionJournal journal;
+
+    private HealingContext(Builder builder) {
+
+        this.configuration = builder.configuration;
+        HealingConfiguration config = getConfiguration();
+        this.scheduler = builder.scheduler != null ? builder.scheduler
+                : new ExecutorHealingScheduler(config.getSchedulerThreads(), config.isSchedulerVirtual());
+        this.timelines = builder.timelines != null ? builder.timelines : new JobTimelines();
+        this.clock = builder.clock != null ? builder.clock : Clock.systemUTC();
+        this.governor = builder.governor != null ? builder.governor
+                : config.isDaoGovernor() ? new DAOGovernor(config.getDaoLatencyTarget(), config.getDaoMaxStretch(),
+                        config.getDaoFailureThreshold(), config.getDaoOpenTime(), clock)
+                : DAOGovernor.NONE;
+        this.dao = createDAO(builder.dao, governor, config, clock);
+        this.notifier = builder.notifier != null ? builder.notifier : new GaswJobNotifier();
+        this.metrics = builder.metrics != null ? builder.metrics
+                : config.isMetricsJmx() ? new JmxMetricsRegistry() : MetricsRegistry.NONE;
+        this.statisticsStore = builder.statisticsStore != null ? builder.statisticsStore
+                : config.getStatsStore().isEmpty() ? null : new PhaseStatisticsStore(Paths.get(config.getStatsStore()));
+        this.replicaBudget = builder.replicaBudget != null ? builder.replicaBudget
+                : new ReplicaBudget(config.getReplicaBudgetCapacity(), config.getReplicaBudgetRate(),
+                        config.getReplicaBudgetOfferTime(), clock);
+        this.journal = builder.journal != null ? builder.journal : createJournal(config, clock);
+    }
+
+    private static HealingDAO createDAO(HealingDAO dao, DAOGovernor governor, HealingConfiguration config,
+            Clock clock) {
+
+        if (dao != null) {
+            return governor == DAOGovernor.NONE ? dao : new GovernedHealingDAO(dao, governor);
+        }
+        dao = new GaswHealingDAO();
+        if (governor != DAOGovernor.NONE) {
+            dao = new GovernedHealingDAO(dao, governor);
+        }
+        // the latency is measured outside the permit wait, on the database calls only
+        if (config.getDaoConcurrency() > 0) {
+            dao = new BoundedHealingDAO(dao, config.getDaoConcurrency());
+        }
+        return config.getActiveJobsMaxAge() > 0 ? new SharedActiveJobsDAO(dao, config.getActiveJobsMaxAge(), clock) : dao;
+    }
+
+    private static DecisionJournal createJournal(HealingConfiguration config, Clock clock) {
+
+        if (config.getJournal().isEmpty()) {
+            return DecisionJournal.NONE;
+        }
+        try {
+            return new NdjsonDecisionJournal(Paths.get(config.getJournal()),
+                    config.getJournalBuffer(), config.isJournalEvents(), clock);
+        } catch (IOException ex) {
+            logger.warn("Unable to open the healing journal {}: {}", config.getJournal(), ex.getMessage());
+            return DecisionJournal.NONE;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the configuration set in the builder, or else the current
+     * plugin configuration, which may be tuned at runtime
+     */
+    public HealingConfiguration getConfiguration() {
+
+        HealingConfiguration current = configuration;
+        return current != null ? current : HealingConfiguration.getInstance();
+    }
+
+    /**
+     * Publishes a copy of the configuration of the context with the given
+     * changes: the builder one if set, or else the plugin one.
+     *
+     * @param changes applied to the copy before it is published
+     */
+    public synchronized void tune(Consumer<HealingConfiguration> changes) {
+
+        if (configuration != null) {
+            configuration = configuration.tuned(changes);
+        } else {
+            HealingConfiguration.tune(changes);
+        }
+    }
+
+    public HealingScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public JobTimelines getTimelines() {
+        return timelines;
+    }
+
+    public HealingDAO getDAO() {
+        return dao;
+    }
+
+    /**
+     * @return the governor slowing down the healing cycles when the database
+     * is slow or failing
+     */
+    public DAOGovernor getGovernor() {
+        return governor;
+    }
+
+    public JobNotifier getNotifier() {
+        return notifier;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the store of the phase statistics, or null when they are not
+     * persisted
+     */
+    public PhaseStatisticsStore getStatisticsStore() {
+        return statisticsStore;
+    }
+
+    /**
+     * @return the replica budget shared by all the commands
+     */
+    public ReplicaBudget getReplicaBudget() {
+        return replicaBudget;
+    }
+
+    public DecisionJournal getJournal() {
+        return journal;
+    }
+
+    public static class Builder {
+
+        private HealingConfiguration configuration;
+        private HealingScheduler scheduler;
+        private JobTimelines timelines;
+        private HealingDAO dao;
+        private DAOGovernor governor;
+        private JobNotifier notifier;
+        private Clock clock;
+        private MetricsRegistry metrics;
+        private PhaseStatisticsStore statisticsStore;
+        private ReplicaBudget replicaBudget;
+        private DecisionJournal journal;
+
+        private Builder() {
+        }
+
+        public Builder configuration(HealingConfiguration configuration) {
+            this.configuration = configuration;
+            return this;
+        }
+
+        public Builder scheduler(HealingScheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        public Builder timelines(JobTimelines timelines) {
+            this.timelines = timelines;
+            return this;
+        }
+
+        public Builder dao(HealingDAO dao) {
+            this.dao = dao;
+            return this;
+        }
+
+        public Builder governor(DAOGovernor governor) {
+            this.governor = governor;
+            return this;
+        }
+
+        public Builder notifier(JobNotifier notifier) {
+            this.notifier = notifier;
+            return this;
+        }
+
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public Builder metrics(MetricsRegistry metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder statisticsStore(PhaseStatisticsStore statisticsStore) {
+            this.statisticsStore = statisticsStore;
+            return this;
+        }
+
+        public Builder replicaBudget(ReplicaBudget replicaBudget) {
+            this.replicaBudget = replicaBudget;
+            return this;
+        }
+
+        public Builder journal(DecisionJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        public HealingContext build() {
+            return new HealingContext(this);
+        }
+    }
+}
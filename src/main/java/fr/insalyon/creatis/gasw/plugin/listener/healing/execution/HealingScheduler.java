@@ -0,0 +1,76 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Runs the healing cycles of every command.
+ */
+public interface HealingScheduler {
+
+    /**
+     * Schedules a single run of the task.
+     *
+     * @param task
+     * @param delay delay in milliseconds
+     * @return the pending run, which may be cancelled
+     */
+    ScheduledFuture<?> schedule(Runnable task, long delay);
+
+    /**
+     * Random delay in [0, period] used to stagger the first cycle of the
+     * commands so that they do not all hit the database at the same time.
+     *
+     * @param period
+     * @return
+     */
+    long jitter(long period);
+
+    /**
+     * Runs tasks of a cycle concurrently and waits for all of them.
+     *
+     * @param tasks
+     * @throws InterruptedException
+     * @throws ExecutionException if a task failed
+     */
+    void invokeAll(List<Callable<Void>> tasks) throws InterruptedException, ExecutionException;
+
+    /**
+     * Stops the running cycles and drops the pending ones.
+     */
+    void shutdown();
+}
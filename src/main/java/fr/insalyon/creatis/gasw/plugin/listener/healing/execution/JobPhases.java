@@ -34,13 +34,9 @@
  */
 package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
 
-import fr.insalyon.creatis.gasw.GaswException;
 import fr.insalyon.creatis.gasw.bean.Job;
-import fr.insalyon.creatis.gasw.bean.JobMinorStatus;
-import fr.insalyon.creatis.gasw.dao.DAOException;
-import fr.insalyon.creatis.gasw.dao.DAOFactory;
 import fr.insalyon.creatis.gasw.execution.GaswMinorStatus;
-import java.util.Date;
+import java.time.Clock;
 
 public class JobPhases {
 
@@ -51,74 +47,79 @@ public class JobPhases {
     private long executionTime = 0;
     private long uploadTime = 0;
     private long estimation = 0;
+    private long medianDuration = 0;
+    private long[] medians;
+    private int currentPhase = -1;
     private GaswMinorStatus lastStatus = null;
 
     /**
      *
      * @param job
+     * @param timeline execution timestamps of the job, as kept by
+     * {@link JobTimelines}
+     * @param clock clock giving the current time
      * @param setupMedian
      * @param inputMedian
      * @param executionMedian
      * @param outputMedian
      */
-    public JobPhases(Job job, long setupMedian, long inputMedian,
-            long executionMedian, long outputMedian) throws GaswException {
+    public JobPhases(Job job, long[] timeline, Clock clock,
+            long setupMedian, long inputMedian,
+            long executionMedian, long outputMedian) {
 
         this.job = job;
+        this.medians = new long[]{setupMedian, inputMedian, executionMedian, outputMedian};
+        this.medianDuration = setupMedian + inputMedian + executionMedian + outputMedian;
 
-        try {
-            for (JobMinorStatus status : DAOFactory.getDAOFactory().getJobMinorStatusDAO().getExecutionMinorStatus(job.getId())) {
-
-                switch (status.getStatus()) {
-                    case Started:
-                        startTime = status.getDate().getTime();
-                        lastStatus = GaswMinorStatus.Started;
-                        break;
-                    case Inputs:
-                        setupTime = status.getDate().getTime() - startTime;
-                        lastStatus = GaswMinorStatus.Inputs;
-                        estimation += setupTime;
-                        break;
-                    case Application:
-                        inputTime = status.getDate().getTime() - setupTime - startTime;
-                        lastStatus = GaswMinorStatus.Application;
-                        estimation += inputTime;
-                        break;
-                    case Outputs:
-                        executionTime = status.getDate().getTime() - inputTime - setupTime - startTime;
-                        lastStatus = GaswMinorStatus.Outputs;
-                        estimation += executionTime;
-                        break;
-                    case Finished:
-                        uploadTime = status.getDate().getTime() - executionTime - inputTime - setupTime - startTime;
-                        lastStatus = GaswMinorStatus.Finished;
-                        estimation += uploadTime;
-                }
-            }
-            long currentTime = new Date().getTime();
-            if (lastStatus != null) {
-                switch (lastStatus) {
-                    case Started:
-                        setupTime = currentTime - startTime;
-                        estimation = Math.max(setupTime, setupMedian) + inputMedian + executionMedian + outputMedian;
-                        break;
-                    case Inputs:
-                        inputTime = currentTime - setupTime - startTime;
-                        estimation += Math.max(inputTime, inputMedian) + executionMedian + outputMedian;
-                        break;
-                    case Application:
-                        executionTime = currentTime - startTime - setupTime - inputTime;
-                        estimation += Math.max(executionTime, executionMedian) + outputMedian;
-                        break;
-                    case Outputs:
-                        uploadTime = currentTime - startTime - setupTime - inputTime - executionTime;
-                        estimation += Math.max(uploadTime, outputMedian);
-                }
-            } else {
-                estimation = setupMedian + inputMedian + executionMedian + outputMedian;
+        if (timeline[JobTimelines.STARTED] != 0) {
+            startTime = timeline[JobTimelines.STARTED];
+            lastStatus = GaswMinorStatus.Started;
+        }
+        if (timeline[JobTimelines.INPUTS] != 0) {
+            setupTime = timeline[JobTimelines.INPUTS] - startTime;
+            lastStatus = GaswMinorStatus.Inputs;
+            estimation += setupTime;
+        }
+        if (timeline[JobTimelines.APPLICATION] != 0) {
+            inputTime = timeline[JobTimelines.APPLICATION] - setupTime - startTime;
+            lastStatus = GaswMinorStatus.Application;
+            estimation += inputTime;
+        }
+        if (timeline[JobTimelines.OUTPUTS] != 0) {
+            executionTime = timeline[JobTimelines.OUTPUTS] - inputTime - setupTime - startTime;
+            lastStatus = GaswMinorStatus.Outputs;
+            estimation += executionTime;
+        }
+        if (timeline[JobTimelines.FINISHED] != 0) {
+            uploadTime = timeline[JobTimelines.FINISHED] - executionTime - inputTime - setupTime - startTime;
+            lastStatus = GaswMinorStatus.Finished;
+            estimation += uploadTime;
+        }
+        long currentTime = clock.millis();
+        if (lastStatus != null) {
+            switch (lastStatus) {
+                case Started:
+                    setupTime = currentTime - startTime;
+                    currentPhase = SitePhaseStatistics.SETUP;
+                    estimation = Math.max(setupTime, setupMedian) + inputMedian + executionMedian + outputMedian;
+                    break;
+                case Inputs:
+                    inputTime = currentTime - setupTime - startTime;
+                    currentPhase = SitePhaseStatistics.INPUT;
+                    estimation += Math.max(inputTime, inputMedian) + executionMedian + outputMedian;
+                    break;
+                case Application:
+                    executionTime = currentTime - startTime - setupTime - inputTime;
+                    currentPhase = SitePhaseStatistics.EXECUTION;
+                    estimation += Math.max(executionTime, executionMedian) + outputMedian;
+                    break;
+                case Outputs:
+                    uploadTime = currentTime - startTime - setupTime - inputTime - executionTime;
+                    currentPhase = SitePhaseStatistics.OUTPUT;
+                    estimation += Math.max(uploadTime, outputMedian);
             }
-        } catch (DAOException ex) {
-            throw new GaswException(ex);
+        } else {
+            estimation = setupMedian + inputMedian + executionMedian + outputMedian;
         }
     }
 
@@ -126,6 +127,41 @@ public class JobPhases {
         return estimation;
     }
 
+    /**
+     * @return the duration of a job following the medians used for the
+     * estimation
+     */
+    public long getMedianDuration() {
+        return medianDuration;
+    }
+
+    /**
+     * @return the setup, input, execution and output medians used for the
+     * estimation
+     */
+    public long[] getMedians() {
+        return medians;
+    }
+
+    /**
+     * @return the phase the job is running, as a {@link SitePhaseStatistics}
+     * index, or -1 if it is not started or already finished
+     */
+    public int getCurrentPhase() {
+        return currentPhase;
+    }
+
+    /**
+     * @param phase {@link SitePhaseStatistics} index of the phase
+     * @return the ratio between the time spent in the phase, so far for the
+     * current phase, and its median, or 0 if the median is unknown
+     */
+    public double getOverrun(int phase) {
+
+        long[] times = {setupTime, inputTime, executionTime, uploadTime};
+        return medians[phase] <= 0 ? 0 : (double) times[phase] / medians[phase];
+    }
+
     public int getLastStatusCode() {
         return lastStatus == null ? -1 : lastStatus.getStatusCode();
     }
@@ -0,0 +1,261 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import fr.insalyon.creatis.gasw.bean.JobMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Execution timestamps of the running jobs, fed by the minor statuses
+ * reported to the listener so that phase durations can be computed without
+ * querying the database.
+ *
+ * The timeline of a job is a long[] indexed by STARTED, INPUTS, APPLICATION,
+ * OUTPUTS and FINISHED, where 0 means that the minor status was not reported
+ * yet. Timelines are replaced, never modified, when a new status arrives.
+ *
+ * The timelines of the last jobs that reached a terminal status are kept
+ * apart, so that a minor status reported late still gives a phase duration
+ * without bringing the job back among the running ones.
+ */
+public class JobTimelines {
+
+    public static final int STARTED = 0;
+    public static final int INPUTS = 1;
+    public static final int APPLICATION = 2;
+    public static final int OUTPUTS = 3;
+    public static final int FINISHED = 4;
+    public static final int SIZE = 5;
+    private static final int EVICTED_CAPACITY = 10000;
+    private final ConcurrentMap<String, long[]> timelines;
+    private final Map<String, long[]> evicted;
+
+    public JobTimelines() {
+
+        this.timelines = new ConcurrentHashMap<>();
+        this.evicted = new LinkedHashMap<String, long[]>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+                return size() > EVICTED_CAPACITY;
+            }
+        };
+    }
+
+    /**
+     * Records a minor status of a job.
+     *
+     * @param jobID
+     * @param status
+     * @param time
+     * @return the duration of the phase ended by this minor status, or -1 if
+     * the status does not end a phase or the start of the phase is unknown
+     */
+    public long record(String jobID, GaswMinorStatus status, long time) {
+
+        int index = indexOf(status);
+        if (index < 0) {
+            return -1;
+        }
+        long[][] late = new long[1][];
+        long[] timeline = timelines.compute(jobID, (id, previous) -> {
+            if (previous == null) {
+                // reported after the terminal status of the job
+                synchronized (evicted) {
+                    long[] ended = evicted.get(id);
+                    if (ended != null) {
+                        late[0] = ended.clone();
+                        late[0][index] = time;
+                        evicted.put(id, late[0]);
+                        return null;
+                    }
+                }
+            }
+            long[] updated = previous == null ? new long[SIZE] : previous.clone();
+            updated[index] = time;
+            return updated;
+        });
+        if (timeline == null) {
+            timeline = late[0];
+        }
+        return index > STARTED && timeline[index - 1] != 0 ? time - timeline[index - 1] : -1;
+    }
+
+    /**
+     * Fills the statuses missing from the timeline of a running job with the
+     * ones loaded from the database.
+     *
+     * @param jobID
+     * @param loaded
+     */
+    public void complete(String jobID, long[] loaded) {
+
+        timelines.computeIfPresent(jobID, (id, previous) -> {
+            long[] updated = previous.clone();
+            for (int i = 0; i < SIZE; i++) {
+                if (updated[i] == 0) {
+                    updated[i] = loaded[i];
+                }
+            }
+            return updated;
+        });
+    }
+
+    /**
+     * @param jobID
+     * @return the timeline of the job, which must not be modified, or null if
+     * no minor status was reported for it
+     */
+    public long[] get(String jobID) {
+        return timelines.get(jobID);
+    }
+
+    /**
+     * Forgets the timeline of a job that reached a terminal status.
+     *
+     * @param jobID
+     */
+    public void evict(String jobID) {
+
+        // under the lock of the entry, so that no status recorded meanwhile is lost
+        timelines.compute(jobID, (id, timeline) -> {
+            synchronized (evicted) {
+                evicted.put(id, timeline != null ? timeline : new long[SIZE]);
+            }
+            return null;
+        });
+    }
+
+    public int size() {
+        return timelines.size();
+    }
+
+    /**
+     * @param timeline
+     * @return true if the timeline starts with the Started status and has no
+     * missing status before the last one reported, e.g. when the listener
+     * was loaded after the job started
+     */
+    public static boolean isComplete(long[] timeline) {
+
+        if (timeline[STARTED] == 0) {
+            return false;
+        }
+        int last = FINISHED;
+        while (timeline[last] == 0) {
+            last--;
+        }
+        for (int i = STARTED + 1; i < last; i++) {
+            if (timeline[i] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param timeline
+     * @return true if some minor statuses were reported but the timeline is
+     * not complete
+     */
+    public static boolean isPartial(long[] timeline) {
+
+        for (long time : timeline) {
+            if (time != 0) {
+                return !isComplete(timeline);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param status
+     * @return true if a job in this status will not report minor statuses
+     * anymore
+     */
+    public static boolean isTerminal(GaswStatus status) {
+
+        switch (status) {
+            case COMPLETED:
+            case ERROR:
+            case STALLED:
+            case CANCELLED:
+            case CANCELLED_REPLICA:
+            case DELETED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Builds a timeline from the minor statuses stored in the database.
+     *
+     * @param minorStatuses
+     * @return
+     */
+    public static long[] fromMinorStatuses(List<JobMinorStatus> minorStatuses) {
+
+        long[] timeline = new long[SIZE];
+        for (JobMinorStatus minorStatus : minorStatuses) {
+            int index = indexOf(minorStatus.getStatus());
+            if (index >= 0) {
+                timeline[index] = minorStatus.getDate().getTime();
+            }
+        }
+        return timeline;
+    }
+
+    private static int indexOf(GaswMinorStatus status) {
+
+        switch (status) {
+            case Started:
+                return STARTED;
+            case Inputs:
+                return INPUTS;
+            case Application:
+                return APPLICATION;
+            case Outputs:
+                return OUTPUTS;
+            case Finished:
+                return FINISHED;
+            default:
+                return -1;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import fr.insalyon.creatis.gasw.GaswExitCode;
+import fr.insalyon.creatis.gasw.GaswOutput;
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.dao.DAOException;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.HealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.journal.DecisionJournal;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.metrics.CommandMetrics;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Kills all the jobs of a command once its kill decision is taken.
+ *
+ * Each pass loads the jobs of the command with a fixed number of queries
+ * and only revisits the invocations that were not processed yet or still
+ * have active jobs. Held jobs are released in parallel on the tasks of the
+ * shared scheduler, with a bounded number of workers.
+ */
+public class KillPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(KillPipeline.class);
+    private final String command;
+    private final JobNotifier notifier;
+    private final DecisionJournal journal;
+    private final int parallelism;
+    private final int updateRetries;
+    private final Set<Integer> processedInvocations;
+    private final HealingScheduler scheduler;
+    private final CommandMetrics metrics;
+    private DecisionSink lastSink;
+
+    public KillPipeline(String command, JobNotifier notifier, DecisionJournal journal,
+            HealingScheduler scheduler, CommandMetrics metrics, int parallelism, int updateRetries) {
+
+        this.command = command;
+        this.notifier = notifier;
+        this.journal = journal;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.parallelism = Math.max(1, parallelism);
+        this.updateRetries = updateRetries;
+        this.processedInvocations = new HashSet<>();
+    }
+
+    /**
+     * Runs one pass of the pipeline.
+     *
+     * @param dao
+     * @return true if there were no active jobs left in the workflow
+     * @throws DAOException
+     */
+    public boolean run(HealingDAO dao) throws DAOException {
+
+        if (lastSink != null && lastSink.isRetrying()) {
+            logger.info("Kill decisions of {} still being written, skipping the pass", command);
+            return false;
+        }
+        long start = System.nanoTime();
+        List<Job> commandJobs = dao.getActiveJobsByCommand(command);
+        List<Integer> commandInvocations = dao.getInvocationsByCommand(command);
+        metrics.daoCalls(2, System.nanoTime() - start);
+
+        Map<Integer, List<Job>> activeJobs = new TreeMap<>();
+        for (Job job : commandJobs) {
+            activeJobs.computeIfAbsent(job.getInvocationID(), i -> new ArrayList<>()).add(job);
+        }
+
+        Set<Integer> invocations = new HashSet<>(commandInvocations);
+        invocations.removeAll(processedInvocations);
+        invocations.addAll(activeJobs.keySet());
+
+        DecisionSink sink = new DecisionSink(updateRetries, scheduler, metrics);
+        lastSink = sink;
+        List<Integer> finishedInvocations = new ArrayList<>();
+        for (int invocation : invocations) {
+            List<Job> jobs = activeJobs.get(invocation);
+            if (jobs != null) {
+                GaswStatus status = GaswStatus.KILL;
+                for (Job job : jobs) {
+                    if (job.getStatus() != GaswStatus.KILL && job.getStatus() != GaswStatus.KILL_REPLICA) {
+                        job.setStatus(status);
+                        job.setBeingKilled(true);
+                        sink.record(job);
+                        logger.debug("Setting status of job {} to {}", job.getId(), status);
+                        journal.kill(command, invocation, job.getId(), status);
+                    }
+                    //all subsequent jobs are replica, so kill them as such
+                    status = GaswStatus.KILL_REPLICA;
+                }
+            } else {
+                finishedInvocations.add(invocation);
+            }
+        }
+
+        int killed = sink.size();
+        sink.flush(dao);
+        int held = 0;
+        if (!finishedInvocations.isEmpty()) {
+            held = handleHeldJobs(dao, finishedInvocations);
+        }
+        logger.info("Killed {} jobs and released {} held jobs of {}", killed, held, command);
+
+        if (!activeJobs.isEmpty()) {
+            return false;
+        }
+        start = System.nanoTime();
+        boolean workflowDone = dao.getActiveJobs().isEmpty();
+        metrics.daoCalls(1, System.nanoTime() - start);
+        return workflowDone;
+    }
+
+    /**
+     * Releases the held jobs of the invocations without active nor completed
+     * jobs. An invocation is not visited again once all its held jobs were
+     * released.
+     *
+     * @return the number of held jobs released
+     */
+    private int handleHeldJobs(HealingDAO dao, List<Integer> invocations) throws DAOException {
+
+        // one pass over the jobs of the command instead of a query per invocation
+        Set<Integer> completedInvocations = new HashSet<>();
+        Map<Integer, List<Job>> heldJobs = new TreeMap<>();
+        long start = System.nanoTime();
+        List<Job> commandJobs = dao.getJobsByCommand(command);
+        metrics.daoCalls(1, System.nanoTime() - start);
+        for (Job job : commandJobs) {
+            if (job.getStatus() == GaswStatus.COMPLETED) {
+                completedInvocations.add(job.getInvocationID());
+            } else if (job.getStatus() == GaswStatus.ERROR_HELD || job.getStatus() == GaswStatus.STALLED_HELD) {
+                heldJobs.computeIfAbsent(job.getInvocationID(), i -> new ArrayList<>()).add(job);
+            }
+        }
+
+        List<Integer> heldInvocations = new ArrayList<>();
+        for (int invocation : invocations) {
+            if (completedInvocations.contains(invocation) || !heldJobs.containsKey(invocation)) {
+                processedInvocations.add(invocation);
+            } else {
+                heldInvocations.add(invocation);
+            }
+        }
+        if (heldInvocations.isEmpty()) {
+            return 0;
+        }
+
+        int workers = Math.min(parallelism, heldInvocations.size());
+        boolean[] released = new boolean[heldInvocations.size()];
+        AtomicInteger releasedJobs = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int worker = 0; worker < workers; worker++) {
+            int first = worker;
+            tasks.add(() -> {
+                for (int i = first; i < released.length; i += workers) {
+                    released[i] = true;
+                    for (Job job : heldJobs.get(heldInvocations.get(i))) {
+                        if (handleHeldJob(dao, job)) {
+                            releasedJobs.incrementAndGet();
+                        } else {
+                            released[i] = false;
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        try {
+            scheduler.invokeAll(tasks);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            logger.error("Error handling held jobs: ", ex.getCause());
+        }
+        // the invocations whose held jobs failed are retried in the next pass
+        for (int i = 0; i < released.length; i++) {
+            if (released[i]) {
+                processedInvocations.add(heldInvocations.get(i));
+            }
+        }
+        return releasedJobs.get();
+    }
+
+    private boolean handleHeldJob(HealingDAO dao, Job job) {
+
+        try {
+            GaswStatus newStatus = GaswStatus.ERROR;
+            GaswExitCode exitCode = GaswExitCode.EXECUTION_FAILED;
+            if (job.getStatus() == GaswStatus.STALLED_HELD) {
+                newStatus = GaswStatus.STALLED;
+                exitCode = GaswExitCode.EXECUTION_STALLED;
+            }
+            job.setBeingKilled(true);
+            job.setStatus(newStatus);
+            long start = System.nanoTime();
+            try {
+                dao.update(job);
+            } finally {
+                metrics.daoCalls(1, System.nanoTime() - start);
+            }
+            GaswOutput gaswOutput;
+            GaswOutput previousGaswOutput = notifier.getOutputFromLastFailedJob(job.getFileName() + ".jdl");
+            if (previousGaswOutput !=  null) {
+                logger.info("Getting previous StdOutErr files for held job instance: {}", job.getFileName());
+                gaswOutput = new GaswOutput(job.getFileName() + ".jdl", exitCode, job.getExitMessage(),
+                        null, previousGaswOutput.getAppStdOut(), previousGaswOutput.getAppStdErr(), previousGaswOutput.getStdOut(), previousGaswOutput.getStdErr());
+            } else {
+                logger.info("No previous StdOutErr files for held job instance: {}. Setting it to null.", job.getFileName());
+                gaswOutput = new GaswOutput(job.getFileName() + ".jdl", exitCode, job.getExitMessage(),
+                        null, null, null, null, null);
+            }
+            notifier.addFinishedJob(gaswOutput);
+            logger.info("Handled Held job {}", job.getId());
+            return true;
+
+        } catch (DAOException | RuntimeException ex) {
+            logger.error("Error handling held job: ", ex);
+            return false;
+        }
+    }
+}
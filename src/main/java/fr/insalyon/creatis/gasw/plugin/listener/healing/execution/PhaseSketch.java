@@ -0,0 +1,234 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import java.util.Arrays;
+
+/**
+ * Streaming estimation of a phase duration distribution.
+ *
+ * Each tracked quantile is estimated with the P² algorithm (Jain and
+ * Chlamtac), so the memory used is constant whatever the number of samples
+ * and a query does not need to sort anything.
+ */
+public class PhaseSketch implements PhaseStatistics {
+
+    private final P2Quantile median;
+    private final P2Quantile p90;
+    private final P2Quantile p99;
+    private long count;
+
+    public PhaseSketch() {
+
+        this.median = new P2Quantile(0.5);
+        this.p90 = new P2Quantile(0.9);
+        this.p99 = new P2Quantile(0.99);
+        this.count = 0;
+    }
+
+    @Override
+    public synchronized void add(long value) {
+
+        median.add(value);
+        p90.add(value);
+        p99.add(value);
+        count++;
+    }
+
+    /**
+     * Sets the markers of an empty sketch straight on the prior quantiles,
+     * as the P² estimations drift when fed with few or sorted samples.
+     */
+    @Override
+    public synchronized void addPrior(int weight, long median, long p90, long p99) {
+
+        if (count > 0 || weight < 5) {
+            PhaseStatistics.super.addPrior(weight, median, p90, p99);
+            return;
+        }
+        if (median <= 0) {
+            return;
+        }
+        PriorDistribution prior = new PriorDistribution(median, p90, p99);
+        this.median.seed(weight, prior);
+        this.p90.seed(weight, prior);
+        this.p99.seed(weight, prior);
+        count = weight;
+    }
+
+    @Override
+    public synchronized long getCount() {
+        return count;
+    }
+
+    @Override
+    public synchronized long getMedian() {
+        return median.getEstimation();
+    }
+
+    @Override
+    public synchronized long getP90() {
+        return p90.getEstimation();
+    }
+
+    @Override
+    public synchronized long getP99() {
+        return p99.getEstimation();
+    }
+
+    /**
+     * P² estimator of a single quantile. The first five samples are kept to
+     * initialize the markers and give exact values for small counts.
+     */
+    private static class P2Quantile {
+
+        private final double p;
+        private final double[] heights = new double[5];
+        private final int[] positions = new int[5];
+        private final double[] desired = new double[5];
+        private final double[] increments;
+        private int count;
+
+        P2Quantile(double p) {
+
+            this.p = p;
+            this.increments = new double[]{0, p / 2, p, (1 + p) / 2, 1};
+            this.count = 0;
+        }
+
+        void add(double x) {
+
+            if (count < 5) {
+                heights[count++] = x;
+                if (count == 5) {
+                    Arrays.sort(heights);
+                    for (int i = 0; i < 5; i++) {
+                        positions[i] = i;
+                    }
+                    desired[0] = 0;
+                    desired[1] = 2 * p;
+                    desired[2] = 4 * p;
+                    desired[3] = 2 + 2 * p;
+                    desired[4] = 4;
+                }
+                return;
+            }
+            count++;
+
+            int k;
+            if (x < heights[0]) {
+                heights[0] = x;
+                k = 0;
+            } else if (x >= heights[4]) {
+                heights[4] = x;
+                k = 3;
+            } else {
+                k = 0;
+                while (x >= heights[k + 1]) {
+                    k++;
+                }
+            }
+            for (int i = k + 1; i < 5; i++) {
+                positions[i]++;
+            }
+            for (int i = 0; i < 5; i++) {
+                desired[i] += increments[i];
+            }
+
+            for (int i = 1; i < 4; i++) {
+                double d = desired[i] - positions[i];
+                if ((d >= 1 && positions[i + 1] - positions[i] > 1)
+                        || (d <= -1 && positions[i - 1] - positions[i] < -1)) {
+
+                    int sign = d > 0 ? 1 : -1;
+                    double candidate = parabolic(i, sign);
+                    if (heights[i - 1] < candidate && candidate < heights[i + 1]) {
+                        heights[i] = candidate;
+                    } else {
+                        heights[i] = linear(i, sign);
+                    }
+                    positions[i] += sign;
+                }
+            }
+        }
+
+        /**
+         * Places the markers of an empty estimator as if the given number of
+         * samples, at least 5, had been drawn from the prior.
+         */
+        void seed(int samples, PriorDistribution prior) {
+
+            int last = samples - 1;
+            for (int i = 0; i < 5; i++) {
+                desired[i] = last * increments[i];
+                heights[i] = prior.getQuantile(increments[i]);
+            }
+            positions[0] = 0;
+            positions[4] = last;
+            positions[3] = Math.min((int) Math.round(desired[3]), last - 1);
+            positions[2] = Math.min((int) Math.round(desired[2]), positions[3] - 1);
+            positions[1] = Math.max(1, Math.min((int) Math.round(desired[1]), positions[2] - 1));
+            positions[2] = Math.max(positions[1] + 1, positions[2]);
+            positions[3] = Math.max(positions[2] + 1, positions[3]);
+            count = samples;
+        }
+
+        long getEstimation() {
+
+            if (count == 0) {
+                return 0;
+            }
+            if (count >= 5) {
+                return Math.round(heights[2]);
+            }
+            double[] sorted = Arrays.copyOf(heights, count);
+            Arrays.sort(sorted);
+            double rank = p * (count - 1);
+            int lower = (int) Math.floor(rank);
+            int upper = (int) Math.ceil(rank);
+            return Math.round(sorted[lower] + (rank - lower) * (sorted[upper] - sorted[lower]));
+        }
+
+        private double parabolic(int i, int d) {
+
+            return heights[i] + (double) d / (positions[i + 1] - positions[i - 1])
+                    * ((positions[i] - positions[i - 1] + d) * (heights[i + 1] - heights[i]) / (positions[i + 1] - positions[i])
+                    + (positions[i + 1] - positions[i] - d) * (heights[i] - heights[i - 1]) / (positions[i] - positions[i - 1]));
+        }
+
+        private double linear(int i, int d) {
+
+            return heights[i] + d * (heights[i + d] - heights[i]) / (positions[i + d] - positions[i]);
+        }
+    }
+}
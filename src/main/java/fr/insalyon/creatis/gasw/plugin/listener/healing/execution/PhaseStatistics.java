@@ -0,0 +1,103 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import fr.insalyon.creatis.gasw.plugin.listener.healing.HealingConfiguration;
+import java.time.Clock;
+import java.util.Random;
+
+/**
+ * Distribution of the durations of a job phase, in milliseconds.
+ */
+public interface PhaseStatistics {
+
+    void add(long value);
+
+    /**
+     * @return the number of samples the estimations are computed from
+     */
+    long getCount();
+
+    long getMedian();
+
+    long getP90();
+
+    long getP99();
+
+    /**
+     * Adds prior samples following the given quantiles, as if they had been
+     * measured. Each sample takes the upper quantile of its rank, so that
+     * nearest-rank estimations give back the stored quantiles, and the
+     * samples are added in a shuffled order for the streaming estimators.
+     *
+     * @param weight number of samples added
+     * @param median
+     * @param p90
+     * @param p99
+     */
+    default void addPrior(int weight, long median, long p90, long p99) {
+
+        if (median <= 0 || weight <= 0) {
+            return;
+        }
+        PriorDistribution prior = new PriorDistribution(median, p90, p99);
+        int[] ranks = new int[weight];
+        for (int i = 0; i < weight; i++) {
+            ranks[i] = i;
+        }
+        Random random = new Random(weight);
+        for (int i = weight - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int rank = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = rank;
+        }
+        for (int rank : ranks) {
+            add(Math.round(prior.getQuantile((rank + 1.0) / weight)));
+        }
+    }
+
+    /**
+     * @param clock
+     * @param config
+     * @return statistics of the mode set in the configuration
+     */
+    static PhaseStatistics create(Clock clock, HealingConfiguration config) {
+
+        if ("window".equalsIgnoreCase(config.getStatsMode())) {
+            return new WindowedPhaseStatistics(config.getStatsWindowSize(),
+                    config.getStatsWindowTime(), config.getStatsDecayHalfLife(), clock);
+        }
+        return new PhaseSketch();
+    }
+}
@@ -0,0 +1,118 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Local file store of the phase statistics of each command, so that the
+ * healing of a command can start from the statistics of its previous runs.
+ *
+ * A command is stored in its own properties file, with the number of
+ * samples, the median, the 90th and the 99th percentiles of each phase.
+ */
+public class PhaseStatisticsStore {
+
+    private static final String[] PHASES = {"setup", "input", "execution", "output"};
+    private final Path directory;
+
+    public PhaseStatisticsStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param command
+     * @param counts number of samples measured for each phase, excluding the
+     * preloaded ones. A phase stored without samples is not preloaded.
+     * @param phases setup, input, execution and output statistics
+     * @throws IOException
+     */
+    public synchronized void save(String command, long[] counts, PhaseStatistics... phases) throws IOException {
+
+        Properties properties = new Properties();
+        for (int i = 0; i < PHASES.length; i++) {
+            properties.setProperty(PHASES[i] + ".count", Long.toString(counts[i]));
+            properties.setProperty(PHASES[i] + ".p50", Long.toString(phases[i].getMedian()));
+            properties.setProperty(PHASES[i] + ".p90", Long.toString(phases[i].getP90()));
+            properties.setProperty(PHASES[i] + ".p99", Long.toString(phases[i].getP99()));
+        }
+        Files.createDirectories(directory);
+        Path file = getFile(command);
+        Path tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "Phase statistics of " + command);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Adds the stored statistics of a command as prior samples.
+     *
+     * @param command
+     * @param weight number of samples added to each phase
+     * @param phases setup, input, execution and output statistics
+     * @return false if nothing was stored for the command
+     * @throws IOException
+     */
+    public synchronized boolean preload(String command, int weight, PhaseStatistics... phases) throws IOException {
+
+        Path file = getFile(command);
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        for (int i = 0; i < PHASES.length; i++) {
+            if (Long.parseLong(properties.getProperty(PHASES[i] + ".count", "0")) > 0) {
+                phases[i].addPrior(weight,
+                        Long.parseLong(properties.getProperty(PHASES[i] + ".p50", "0")),
+                        Long.parseLong(properties.getProperty(PHASES[i] + ".p90", "0")),
+                        Long.parseLong(properties.getProperty(PHASES[i] + ".p99", "0")));
+            }
+        }
+        return true;
+    }
+
+    private Path getFile(String command) {
+        return directory.resolve(command.replaceAll("[^A-Za-z0-9._-]", "_") + ".properties");
+    }
+}
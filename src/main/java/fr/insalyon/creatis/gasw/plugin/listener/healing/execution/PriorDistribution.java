@@ -0,0 +1,68 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+/**
+ * Duration distribution rebuilt from a stored median, 90th and 99th
+ * percentiles, interpolated in log scale. The lower tail mirrors the upper
+ * one and the quantiles above the 99th percentile are the 99th percentile.
+ */
+final class PriorDistribution {
+
+    private static final double[] QUANTILES = {0.01, 0.1, 0.5, 0.9, 0.99};
+    private final double[] logValues;
+
+    PriorDistribution(long median, long p90, long p99) {
+
+        double logMedian = Math.log(median);
+        double logP90 = Math.log(Math.max(p90, median));
+        double logP99 = Math.log(Math.max(p99, Math.max(p90, median)));
+        this.logValues = new double[]{2 * logMedian - logP99, 2 * logMedian - logP90, logMedian, logP90, logP99};
+    }
+
+    double getQuantile(double quantile) {
+
+        if (quantile <= QUANTILES[0]) {
+            return Math.exp(logValues[0]);
+        }
+        if (quantile >= QUANTILES[QUANTILES.length - 1]) {
+            return Math.exp(logValues[logValues.length - 1]);
+        }
+        int j = 1;
+        while (QUANTILES[j] < quantile) {
+            j++;
+        }
+        double ratio = (quantile - QUANTILES[j - 1]) / (QUANTILES[j] - QUANTILES[j - 1]);
+        return Math.exp(logValues[j - 1] + ratio * (logValues[j] - logValues[j - 1]));
+    }
+}
@@ -0,0 +1,163 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Token bucket limiting the replicas submitted by all the commands, so that
+ * a degraded site does not flood the grid with replicas. A replica takes a
+ * token; tokens come back at a fixed rate, up to the capacity.
+ *
+ * The tokens go to the most blocked candidates of the workflow. The
+ * candidates a command could not replicate stay offered for the offer time,
+ * and a candidate gets a token only if fewer offered candidates of the other
+ * commands are more blocked than it than there are tokens left.
+ */
+public class ReplicaBudget {
+
+    private final int capacity;
+    private final double tokensPerMillisecond;
+    private final long offerTime;
+    private final Clock clock;
+    private double tokens;
+    private long lastRefill;
+    // blocked ratios of the deferred candidates of each command
+    private final Map<String, Offer> offers;
+
+    /**
+     * @param capacity maximum number of tokens, or 0 or less for an
+     * unlimited budget
+     * @param tokensPerMinute
+     * @param offerTime time during which deferred candidates are ranked, in
+     * milliseconds
+     * @param clock
+     */
+    public ReplicaBudget(int capacity, double tokensPerMinute, long offerTime, Clock clock) {
+
+        this.capacity = capacity;
+        this.tokensPerMillisecond = tokensPerMinute / 60000;
+        this.offerTime = offerTime;
+        this.clock = clock;
+        this.tokens = capacity;
+        this.lastRefill = clock.millis();
+        this.offers = new HashMap<>();
+    }
+
+    /**
+     * Takes the tokens of the candidates of a command that rank among the
+     * most blocked of the workflow, and offers the others.
+     *
+     * @param command
+     * @param ratios blocked ratios of the candidates of the command, in
+     * decreasing order
+     * @return the number of candidates that may be replicated, the first ones
+     */
+    public synchronized int acquire(String command, double[] ratios) {
+
+        if (capacity <= 0) {
+            return ratios.length;
+        }
+        refill();
+        offers.remove(command);
+        long now = clock.millis();
+        offers.values().removeIf(offer -> now - offer.time > offerTime);
+
+        int granted = 0;
+        while (granted < ratios.length && granted + countMoreBlocked(ratios[granted]) < (int) tokens) {
+            granted++;
+        }
+        tokens -= granted;
+        if (granted < ratios.length) {
+            double[] deferred = new double[ratios.length - granted];
+            System.arraycopy(ratios, granted, deferred, 0, deferred.length);
+            offers.put(command, new Offer(deferred, now));
+        }
+        return granted;
+    }
+
+    /**
+     * Withdraws the candidates offered by a command, e.g. when it ends.
+     *
+     * @param command
+     */
+    public synchronized void withdraw(String command) {
+        offers.remove(command);
+    }
+
+    /**
+     * @return the number of replicas that may be submitted now, or
+     * Integer.MAX_VALUE for an unlimited budget
+     */
+    public synchronized int getAvailable() {
+
+        if (capacity <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        refill();
+        return (int) tokens;
+    }
+
+    private int countMoreBlocked(double ratio) {
+
+        int count = 0;
+        for (Offer offer : offers.values()) {
+            for (double offered : offer.ratios) {
+                if (offered > ratio) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void refill() {
+
+        long now = clock.millis();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerMillisecond);
+        lastRefill = now;
+    }
+
+    private static class Offer {
+
+        private final double[] ratios;
+        private final long time;
+
+        private Offer(double[] ratios, long time) {
+            this.ratios = ratios;
+            this.time = time;
+        }
+    }
+}
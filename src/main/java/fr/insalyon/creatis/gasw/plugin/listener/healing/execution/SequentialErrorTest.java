@@ -0,0 +1,90 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+/**
+ * Sequential probability ratio test deciding whether a command is failing,
+ * from the finished jobs only, instead of waiting for a minimum number of
+ * invocations.
+ *
+ * The test compares a healthy job error rate p0 with a failing one p1. Each
+ * failed job adds log(p1 / p0) to the log-likelihood ratio and each
+ * successful job adds log((1 - p1) / (1 - p0)). The command is declared
+ * failing when the ratio reaches log(1 / risk), which bounds the probability
+ * of killing a healthy command by the risk whatever the number of jobs.
+ */
+public class SequentialErrorTest {
+
+    private final double failureWeight;
+    private final double successWeight;
+    private final double threshold;
+
+    /**
+     * @param acceptableError job error percentage of a healthy command
+     * @param failingError job error percentage of a failing command, greater
+     * than the acceptable one
+     * @param risk probability of declaring a healthy command failing, in
+     * (0, 1)
+     */
+    public SequentialErrorTest(double acceptableError, double failingError, double risk) {
+
+        double p0 = acceptableError / 100;
+        double p1 = failingError / 100;
+        if (!(p0 > 0 && p0 < p1 && p1 < 1) || !(risk > 0 && risk < 1)) {
+            throw new IllegalArgumentException("Invalid sequential test: acceptable error " + acceptableError
+                    + "%, failing error " + failingError + "%, risk " + risk);
+        }
+        this.failureWeight = Math.log(p1 / p0);
+        this.successWeight = Math.log((1 - p1) / (1 - p0));
+        this.threshold = Math.log(1 / risk);
+    }
+
+    /**
+     * @param failedJobs
+     * @param succeededJobs
+     * @return the log-likelihood ratio of the failing hypothesis
+     */
+    public double getLogLikelihoodRatio(int failedJobs, int succeededJobs) {
+        return failedJobs * failureWeight + succeededJobs * successWeight;
+    }
+
+    /**
+     * @param failedJobs
+     * @param succeededJobs
+     * @return true if the finished jobs are conclusive evidence that the
+     * command is failing
+     */
+    public boolean isFailing(int failedJobs, int succeededJobs) {
+        return getLogLikelihoodRatio(failedJobs, succeededJobs) >= threshold;
+    }
+}
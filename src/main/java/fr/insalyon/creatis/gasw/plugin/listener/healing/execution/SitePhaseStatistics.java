@@ -0,0 +1,130 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import fr.insalyon.creatis.gasw.plugin.listener.healing.HealingConfiguration;
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.bean.Node;
+import java.time.Clock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Phase statistics of a command for each execution site, as sites can
+ * differ severalfold in download and execution speeds. A site phase with
+ * too few samples is replaced by the command-wide median.
+ */
+public class SitePhaseStatistics {
+
+    public static final int SETUP = 0;
+    public static final int INPUT = 1;
+    public static final int EXECUTION = 2;
+    public static final int OUTPUT = 3;
+
+    private final ConcurrentMap<String, PhaseStatistics[]> sites;
+    private final int minSamples;
+    private final Clock clock;
+    private final HealingConfiguration config;
+
+    /**
+     * @param config configuration giving the minimum number of samples of a
+     * site phase to use its median, and the statistics mode
+     * @param clock
+     */
+    public SitePhaseStatistics(HealingConfiguration config, Clock clock) {
+
+        this.sites = new ConcurrentHashMap<>();
+        this.minSamples = config.getStatsSiteMinSamples();
+        this.clock = clock;
+        this.config = config;
+    }
+
+    /**
+     * @param site may be null, in which case nothing is recorded
+     * @param phase SETUP, INPUT, EXECUTION or OUTPUT
+     * @param value
+     */
+    public void add(String site, int phase, long value) {
+
+        if (site != null) {
+            sites.computeIfAbsent(site, s -> new PhaseStatistics[]{
+                PhaseStatistics.create(clock, config), PhaseStatistics.create(clock, config),
+                PhaseStatistics.create(clock, config), PhaseStatistics.create(clock, config)})[phase].add(value);
+        }
+    }
+
+    /**
+     * @param site may be null
+     * @param commandMedians command-wide medians of the four phases
+     * @return the medians of the site, each phase falling back to the
+     * command-wide median when the site has too few samples
+     */
+    public long[] getMedians(String site, long[] commandMedians) {
+
+        PhaseStatistics[] phases = site == null ? null : sites.get(site);
+        if (phases == null) {
+            return commandMedians;
+        }
+        long[] medians = commandMedians.clone();
+        for (int i = 0; i < phases.length; i++) {
+            if (phases[i].getCount() >= minSamples) {
+                medians[i] = phases[i].getMedian();
+            }
+        }
+        return medians;
+    }
+
+    public int getSiteCount() {
+        return sites.size();
+    }
+
+    /**
+     * @param job
+     * @return the execution site of the job, or null when it is not known
+     * yet
+     */
+    public static String getSite(Job job) {
+
+        try {
+            Node node = job.getNode();
+            if (node == null || node.getNodeID() == null) {
+                return null;
+            }
+            return node.getNodeID().getSiteName();
+
+        } catch (RuntimeException ex) {
+            // the node may be a lazy association of a detached job
+            return null;
+        }
+    }
+}
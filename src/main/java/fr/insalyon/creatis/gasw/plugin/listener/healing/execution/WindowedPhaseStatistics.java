@@ -0,0 +1,173 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import java.time.Clock;
+import java.util.Arrays;
+
+/**
+ * Phase statistics over recent samples only, so that the estimations follow
+ * the changes of the grid conditions.
+ *
+ * The last samples are kept in a ring buffer. Only those younger than the
+ * window time are used, unless none is, in which case all the buffered
+ * samples are. With a half-life, the weight of a sample also halves each
+ * half-life. The sorted samples are cached and recomputed at most once per
+ * second, or when a sample is added.
+ */
+public class WindowedPhaseStatistics implements PhaseStatistics {
+
+    private static final long REFRESH_TIME = 1000;
+    // sample indexes are packed with the values to sort them together
+    private static final int INDEX_BITS = 20;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+    private final Clock clock;
+    private final long windowTime;
+    private final long halfLife;
+    private final long[] values;
+    private final long[] times;
+    private int next;
+    private int size;
+    private long version;
+    // cache of the samples used, sorted by value
+    private final long[] sorted;
+    private final double[] cumulativeWeights;
+    private int sortedCount;
+    private long sortedVersion;
+    private long sortedTime;
+
+    /**
+     * @param size maximum number of samples kept
+     * @param windowTime maximum age of the samples used, in milliseconds, or
+     * 0 for no limit
+     * @param halfLife half-life of the weight of the samples, in
+     * milliseconds, or 0 for equal weights
+     * @param clock
+     */
+    public WindowedPhaseStatistics(int size, long windowTime, long halfLife, Clock clock) {
+
+        int capacity = Math.max(1, Math.min(size, (int) INDEX_MASK));
+        this.clock = clock;
+        this.windowTime = windowTime;
+        this.halfLife = halfLife;
+        this.values = new long[capacity];
+        this.times = new long[capacity];
+        this.sorted = new long[capacity];
+        this.cumulativeWeights = new double[capacity];
+        this.next = 0;
+        this.size = 0;
+        this.version = 0;
+        this.sortedVersion = -1;
+    }
+
+    @Override
+    public synchronized void add(long value) {
+
+        values[next] = Math.max(0, value);
+        times[next] = clock.millis();
+        next = (next + 1) % values.length;
+        size = Math.min(size + 1, values.length);
+        version++;
+    }
+
+    /**
+     * @return the number of samples the estimations are computed from: those
+     * in the window, or all the buffered ones when none is
+     */
+    @Override
+    public synchronized long getCount() {
+
+        refresh();
+        return sortedCount;
+    }
+
+    @Override
+    public synchronized long getMedian() {
+        return getQuantile(0.5);
+    }
+
+    @Override
+    public synchronized long getP90() {
+        return getQuantile(0.9);
+    }
+
+    @Override
+    public synchronized long getP99() {
+        return getQuantile(0.99);
+    }
+
+    private long getQuantile(double quantile) {
+
+        refresh();
+        if (sortedCount == 0) {
+            return 0;
+        }
+        double target = quantile * cumulativeWeights[sortedCount - 1];
+        for (int i = 0; i < sortedCount; i++) {
+            if (cumulativeWeights[i] >= target) {
+                return sorted[i] >> INDEX_BITS;
+            }
+        }
+        return sorted[sortedCount - 1] >> INDEX_BITS;
+    }
+
+    private void refresh() {
+
+        long now = clock.millis();
+        if (version == sortedVersion && now - sortedTime < REFRESH_TIME) {
+            return;
+        }
+        sortedCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (windowTime <= 0 || now - times[i] <= windowTime) {
+                sorted[sortedCount++] = (values[i] << INDEX_BITS) | i;
+            }
+        }
+        if (sortedCount == 0) {
+            for (int i = 0; i < size; i++) {
+                sorted[sortedCount++] = (values[i] << INDEX_BITS) | i;
+            }
+        }
+        Arrays.sort(sorted, 0, sortedCount);
+
+        double total = 0;
+        for (int i = 0; i < sortedCount; i++) {
+            int index = (int) (sorted[i] & INDEX_MASK);
+            total += halfLife > 0 ? Math.pow(0.5, (double) (now - times[index]) / halfLife) : 1;
+            cumulativeWeights[i] = total;
+        }
+        sortedVersion = version;
+        sortedTime = now;
+    }
+}
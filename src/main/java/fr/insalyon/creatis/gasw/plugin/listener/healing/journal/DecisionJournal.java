@@ -0,0 +1,139 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.journal;
+
+import fr.insalyon.creatis.gasw.execution.GaswMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+
+/**
+ * Record of the healing decisions with their inputs, and of the listener
+ * events they were based on. Recording must be cheap and never block: it is
+ * called from the healing cycles and from the GASW notification threads.
+ */
+public interface DecisionJournal {
+
+    /**
+     * Journal recording nothing.
+     */
+    DecisionJournal NONE = new DecisionJournal() {
+        @Override
+        public void replicate(String command, int invocationID, String jobID, long estimation,
+                long medianDuration, int statusCode, long[] medians) {
+        }
+
+        @Override
+        public void killReplica(String command, int invocationID, String jobID, String bestJobID,
+                long estimation, long bestEstimation, int statusCode, int bestStatusCode) {
+        }
+
+        @Override
+        public void killAll(String command, double jobErrorRate, double invocationErrorRate, int invocations) {
+        }
+
+        @Override
+        public void kill(String command, int invocationID, String jobID, GaswStatus status) {
+        }
+
+        @Override
+        public void jobFinished(String command, String jobID, boolean failed) {
+        }
+
+        @Override
+        public void minorStatus(String command, String jobID, GaswMinorStatus status, long duration) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * @param command
+     * @param invocationID
+     * @param jobID replicated job
+     * @param estimation estimated duration of the job
+     * @param medianDuration duration of a job following the medians
+     * @param statusCode code of the last minor status of the job
+     * @param medians setup, input, execution and output medians used
+     */
+    void replicate(String command, int invocationID, String jobID, long estimation,
+            long medianDuration, int statusCode, long[] medians);
+
+    /**
+     * @param command
+     * @param invocationID
+     * @param jobID killed replica
+     * @param bestJobID replica kept
+     * @param estimation
+     * @param bestEstimation
+     * @param statusCode
+     * @param bestStatusCode
+     */
+    void killReplica(String command, int invocationID, String jobID, String bestJobID,
+            long estimation, long bestEstimation, int statusCode, int bestStatusCode);
+
+    /**
+     * Decision to kill all the jobs of a command.
+     *
+     * @param command
+     * @param jobErrorRate
+     * @param invocationErrorRate
+     * @param invocations number of invocations the rates are computed on
+     */
+    void killAll(String command, double jobErrorRate, double invocationErrorRate, int invocations);
+
+    /**
+     * A job killed after a kill-all decision.
+     *
+     * @param command
+     * @param invocationID
+     * @param jobID
+     * @param status KILL or KILL_REPLICA
+     */
+    void kill(String command, int invocationID, String jobID, GaswStatus status);
+
+    void jobFinished(String command, String jobID, boolean failed);
+
+    /**
+     * @param command
+     * @param jobID
+     * @param status
+     * @param duration duration of the phase ended by this status, or -1
+     */
+    void minorStatus(String command, String jobID, GaswMinorStatus status, long duration);
+
+    /**
+     * Writes the pending entries and stops recording.
+     */
+    void close();
+}
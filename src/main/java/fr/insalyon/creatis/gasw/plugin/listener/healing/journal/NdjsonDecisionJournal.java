@@ -0,0 +1,474 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.journal;
+
+import fr.insalyon.creatis.gasw.execution.GaswMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Journal appending one JSON object per line to a file.
+ *
+ * Entries are copied into a ring buffer of preallocated slots and formatted
+ * by a single writer thread, so recording only takes a short lock and
+ * allocates nothing. A quarter of the buffer is reserved for the decisions:
+ * the listener events are dropped and counted when only the reserve is
+ * left, while a decision waits briefly for a free slot before it is.
+ */
+public class NdjsonDecisionJournal implements DecisionJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(NdjsonDecisionJournal.class);
+    private static final long CLOSE_TIMEOUT = 5000;
+    private static final long DECISION_WAIT = 100;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final int REPLICATE = 0;
+    private static final int KILL_REPLICA = 1;
+    private static final int KILL_ALL = 2;
+    private static final int KILL = 3;
+    private static final int JOB_FINISHED = 4;
+    private static final int MINOR_STATUS = 5;
+    private static final String[] TYPES = {
+        "REPLICATE", "KILL_REPLICA", "KILL_ALL", "KILL", "JOB_FINISHED", "MINOR_STATUS"};
+
+    private final Clock clock;
+    private final boolean events;
+    private final Entry[] ring;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+    // slots the listener events cannot take
+    private final int reserved;
+    private final Writer writer;
+    private final Thread writerThread;
+    private long head;
+    private long tail;
+    private long dropped;
+    private boolean closed;
+
+    /**
+     * @param file file the entries are appended to
+     * @param capacity number of entries buffered
+     * @param events whether the listener events are journaled
+     * @param clock
+     * @throws IOException
+     */
+    public NdjsonDecisionJournal(Path file, int capacity, boolean events, Clock clock) throws IOException {
+
+        this.clock = clock;
+        this.events = events;
+        this.ring = new Entry[Math.max(1, capacity)];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Entry();
+        }
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+        this.notFull = lock.newCondition();
+        this.reserved = ring.length / 4;
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.writerThread = new Thread(this::drain, "healing-journal");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void replicate(String command, int invocationID, String jobID, long estimation,
+            long medianDuration, int statusCode, long[] medians) {
+
+        lock.lock();
+        try {
+            Entry entry = claim(REPLICATE, command, jobID);
+            if (entry != null) {
+                entry.invocationID = invocationID;
+                entry.estimation = estimation;
+                entry.otherEstimation = medianDuration;
+                entry.statusCode = statusCode;
+                System.arraycopy(medians, 0, entry.medians, 0, entry.medians.length);
+                publish();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void killReplica(String command, int invocationID, String jobID, String bestJobID,
+            long estimation, long bestEstimation, int statusCode, int bestStatusCode) {
+
+        lock.lock();
+        try {
+            Entry entry = claim(KILL_REPLICA, command, jobID);
+            if (entry != null) {
+                entry.invocationID = invocationID;
+                entry.otherJobID = bestJobID;
+                entry.estimation = estimation;
+                entry.otherEstimation = bestEstimation;
+                entry.statusCode = statusCode;
+                entry.otherStatusCode = bestStatusCode;
+                publish();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void killAll(String command, double jobErrorRate, double invocationErrorRate, int invocations) {
+
+        lock.lock();
+        try {
+            Entry entry = claim(KILL_ALL, command, null);
+            if (entry != null) {
+                entry.jobErrorRate = jobErrorRate;
+                entry.invocationErrorRate = invocationErrorRate;
+                entry.invocationID = invocations;
+                publish();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void kill(String command, int invocationID, String jobID, GaswStatus status) {
+
+        lock.lock();
+        try {
+            Entry entry = claim(KILL, command, jobID);
+            if (entry != null) {
+                entry.invocationID = invocationID;
+                entry.status = status.name();
+                publish();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void jobFinished(String command, String jobID, boolean failed) {
+
+        if (!events) {
+            return;
+        }
+        lock.lock();
+        try {
+            Entry entry = claim(JOB_FINISHED, command, jobID);
+            if (entry != null) {
+                entry.failed = failed;
+                publish();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void minorStatus(String command, String jobID, GaswMinorStatus status, long duration) {
+
+        if (!events) {
+            return;
+        }
+        lock.lock();
+        try {
+            Entry entry = claim(MINOR_STATUS, command, jobID);
+            if (entry != null) {
+                entry.status = status.name();
+                entry.estimation = duration;
+                publish();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of entries dropped because the buffer was full
+     */
+    public long getDropped() {
+
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notEmpty.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writerThread.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Must be called with the lock held.
+     *
+     * @return the slot to fill, or null if the entry is dropped
+     */
+    private Entry claim(int type, String command, String jobID) {
+
+        if (type == JOB_FINISHED || type == MINOR_STATUS) {
+            if (closed || head - tail >= ring.length - reserved) {
+                dropped++;
+                return null;
+            }
+        } else if (!awaitSlot()) {
+            dropped++;
+            return null;
+        }
+        Entry entry = ring[(int) (head % ring.length)];
+        entry.type = type;
+        entry.time = clock.millis();
+        entry.command = command;
+        entry.jobID = jobID;
+        entry.otherJobID = null;
+        return entry;
+    }
+
+    /**
+     * Must be called with the lock held.
+     *
+     * @return false if no slot was freed in time
+     */
+    private boolean awaitSlot() {
+
+        long remaining = TimeUnit.MILLISECONDS.toNanos(DECISION_WAIT);
+        try {
+            while (!closed && head - tail == ring.length && remaining > 0) {
+                remaining = notFull.awaitNanos(remaining);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !closed && head - tail < ring.length;
+    }
+
+    private void publish() {
+
+        head++;
+        notEmpty.signal();
+    }
+
+    private void drain() {
+
+        Entry[] batch = new Entry[Math.min(ring.length, 1024)];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = new Entry();
+        }
+        StringBuilder line = new StringBuilder(256);
+        long reportedDrops = 0;
+        while (true) {
+            int count = 0;
+            boolean last;
+            long drops;
+            lock.lock();
+            try {
+                while (head == tail && !closed) {
+                    notEmpty.await(1, TimeUnit.SECONDS);
+                }
+                while (tail < head && count < batch.length) {
+                    batch[count++].copy(ring[(int) (tail % ring.length)]);
+                    tail++;
+                }
+                notFull.signalAll();
+                last = closed && tail == head;
+                drops = dropped;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                last = true;
+                drops = dropped;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                for (int i = 0; i < count; i++) {
+                    line.setLength(0);
+                    batch[i].format(line);
+                    writer.append(line);
+                }
+                writer.flush();
+                if (last) {
+                    writer.close();
+                }
+            } catch (IOException ex) {
+                logger.warn("Unable to write the healing journal: {}", ex.getMessage());
+            }
+            if (drops > reportedDrops) {
+                logger.warn("Healing journal full, {} entries dropped so far", drops);
+                reportedDrops = drops;
+            }
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    private static class Entry {
+
+        private int type;
+        private long time;
+        private String command;
+        private String jobID;
+        private String otherJobID;
+        private int invocationID;
+        private long estimation;
+        private long otherEstimation;
+        private int statusCode;
+        private int otherStatusCode;
+        private final long[] medians = new long[4];
+        private double jobErrorRate;
+        private double invocationErrorRate;
+        private String status;
+        private boolean failed;
+
+        void copy(Entry other) {
+
+            type = other.type;
+            time = other.time;
+            command = other.command;
+            jobID = other.jobID;
+            otherJobID = other.otherJobID;
+            invocationID = other.invocationID;
+            estimation = other.estimation;
+            otherEstimation = other.otherEstimation;
+            statusCode = other.statusCode;
+            otherStatusCode = other.otherStatusCode;
+            System.arraycopy(other.medians, 0, medians, 0, medians.length);
+            jobErrorRate = other.jobErrorRate;
+            invocationErrorRate = other.invocationErrorRate;
+            status = other.status;
+            failed = other.failed;
+        }
+
+        void format(StringBuilder line) {
+
+            line.append("{\"time\":").append(time).append(",\"type\":\"").append(TYPES[type]).append('"');
+            appendString(line, "command", command);
+            switch (type) {
+                case REPLICATE:
+                    appendString(line, "job", jobID);
+                    line.append(",\"invocation\":").append(invocationID)
+                            .append(",\"estimation\":").append(estimation)
+                            .append(",\"medianDuration\":").append(otherEstimation)
+                            .append(",\"status\":").append(statusCode)
+                            .append(",\"medians\":[").append(medians[0]).append(',').append(medians[1])
+                            .append(',').append(medians[2]).append(',').append(medians[3]).append(']');
+                    break;
+                case KILL_REPLICA:
+                    appendString(line, "job", jobID);
+                    appendString(line, "bestJob", otherJobID);
+                    line.append(",\"invocation\":").append(invocationID)
+                            .append(",\"estimation\":").append(estimation)
+                            .append(",\"bestEstimation\":").append(otherEstimation)
+                            .append(",\"status\":").append(statusCode)
+                            .append(",\"bestStatus\":").append(otherStatusCode);
+                    break;
+                case KILL_ALL:
+                    line.append(",\"jobErrorRate\":").append(jobErrorRate)
+                            .append(",\"invocationErrorRate\":").append(invocationErrorRate)
+                            .append(",\"invocations\":").append(invocationID);
+                    break;
+                case KILL:
+                    appendString(line, "job", jobID);
+                    line.append(",\"invocation\":").append(invocationID);
+                    appendString(line, "status", status);
+                    break;
+                case JOB_FINISHED:
+                    appendString(line, "job", jobID);
+                    line.append(",\"failed\":").append(failed);
+                    break;
+                case MINOR_STATUS:
+                    appendString(line, "job", jobID);
+                    appendString(line, "status", status);
+                    line.append(",\"duration\":").append(estimation);
+                    break;
+                default:
+            }
+            line.append("}\n");
+        }
+
+        private static void appendString(StringBuilder line, String name, String value) {
+
+            line.append(",\"").append(name).append("\":");
+            if (value == null) {
+                line.append("null");
+                return;
+            }
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    line.append('\\').append(c);
+                } else if (c < 0x20) {
+                    line.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+                } else {
+                    line.append(c);
+                }
+            }
+            line.append('"');
+        }
+    }
+}
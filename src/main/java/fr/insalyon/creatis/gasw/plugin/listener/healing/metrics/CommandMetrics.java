@@ -0,0 +1,261 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Live metrics of the healing of a command, updated by its CommandState at
+ * each cycle and read through a {@link MetricsRegistry}.
+ */
+public class CommandMetrics implements CommandMetricsMXBean {
+
+    private final String command;
+    private long cycles;
+    private long lastCycleDuration;
+    private long maxCycleDuration;
+    private long lastCycleLag;
+    private long maxCycleLag;
+    private int lastCycleDAOCalls;
+    private long totalDAOCalls;
+    private long lastCycleDAOLatency;
+    private int lastCycleJobsEvaluated;
+    private long totalJobsEvaluated;
+    private long replicateDecisions;
+    private long killReplicaDecisions;
+    private long deferredReplicas;
+    private long skippedCycles;
+    private long droppedUpdates;
+    private final Map<String, Long> phaseQuantiles;
+    private double jobErrorRate;
+    private double invocationErrorRate;
+    private boolean killAllJobs;
+    // values of the current cycle
+    private int cycleDAOCalls;
+    private long cycleDAOTime;
+    private int cycleJobsEvaluated;
+
+    public CommandMetrics(String command) {
+
+        this.command = command;
+        this.phaseQuantiles = new LinkedHashMap<>();
+    }
+
+    /**
+     * Adds database calls to the current cycle.
+     *
+     * @param calls
+     * @param time time spent in these calls, in nanoseconds
+     */
+    public synchronized void daoCalls(int calls, long time) {
+
+        cycleDAOCalls += calls;
+        cycleDAOTime += time;
+    }
+
+    /**
+     * Adds evaluated jobs and decisions to the current cycle.
+     *
+     * @param jobsEvaluated
+     * @param replicates number of REPLICATE decisions
+     * @param killReplicas number of KILL_REPLICA decisions
+     */
+    public synchronized void jobsEvaluated(int jobsEvaluated, int replicates, int killReplicas) {
+
+        cycleJobsEvaluated += jobsEvaluated;
+        replicateDecisions += replicates;
+        killReplicaDecisions += killReplicas;
+    }
+
+    /**
+     * @param replicas number of replicas not submitted for lack of replica
+     * budget
+     */
+    public synchronized void replicasDeferred(int replicas) {
+        deferredReplicas += replicas;
+    }
+
+    /**
+     * @param jobs number of jobs whose decided status could not be written
+     */
+    public synchronized void updatesDropped(int jobs) {
+        droppedUpdates += jobs;
+    }
+
+    /**
+     * Counts a cycle skipped because the database access is suspended.
+     */
+    public synchronized void cycleSkipped() {
+        skippedCycles++;
+    }
+
+    /**
+     * Ends the current cycle.
+     *
+     * @param duration duration of the cycle
+     * @param lag delay between the scheduled and the actual start of the
+     * cycle
+     */
+    public synchronized void cycleCompleted(long duration, long lag) {
+
+        cycles++;
+        lastCycleDuration = duration;
+        maxCycleDuration = Math.max(maxCycleDuration, duration);
+        lastCycleLag = lag;
+        maxCycleLag = Math.max(maxCycleLag, lag);
+        lastCycleDAOCalls = cycleDAOCalls;
+        totalDAOCalls += cycleDAOCalls;
+        lastCycleDAOLatency = cycleDAOTime / 1000000;
+        lastCycleJobsEvaluated = cycleJobsEvaluated;
+        totalJobsEvaluated += cycleJobsEvaluated;
+        cycleDAOCalls = 0;
+        cycleDAOTime = 0;
+        cycleJobsEvaluated = 0;
+    }
+
+    public synchronized void setPhaseQuantiles(String phase, long median, long p90, long p99) {
+
+        phaseQuantiles.put(phase + ".p50", median);
+        phaseQuantiles.put(phase + ".p90", p90);
+        phaseQuantiles.put(phase + ".p99", p99);
+    }
+
+    public synchronized void setErrorRates(double jobErrorRate,
+            double invocationErrorRate, boolean killAllJobs) {
+
+        this.jobErrorRate = jobErrorRate;
+        this.invocationErrorRate = invocationErrorRate;
+        this.killAllJobs = killAllJobs;
+    }
+
+    @Override
+    public String getCommand() {
+        return command;
+    }
+
+    @Override
+    public synchronized long getCycles() {
+        return cycles;
+    }
+
+    @Override
+    public synchronized long getLastCycleDuration() {
+        return lastCycleDuration;
+    }
+
+    @Override
+    public synchronized long getMaxCycleDuration() {
+        return maxCycleDuration;
+    }
+
+    @Override
+    public synchronized long getLastCycleLag() {
+        return lastCycleLag;
+    }
+
+    @Override
+    public synchronized long getMaxCycleLag() {
+        return maxCycleLag;
+    }
+
+    @Override
+    public synchronized int getLastCycleDAOCalls() {
+        return lastCycleDAOCalls;
+    }
+
+    @Override
+    public synchronized long getTotalDAOCalls() {
+        return totalDAOCalls;
+    }
+
+    @Override
+    public synchronized long getLastCycleDAOLatency() {
+        return lastCycleDAOLatency;
+    }
+
+    @Override
+    public synchronized int getLastCycleJobsEvaluated() {
+        return lastCycleJobsEvaluated;
+    }
+
+    @Override
+    public synchronized long getTotalJobsEvaluated() {
+        return totalJobsEvaluated;
+    }
+
+    @Override
+    public synchronized long getReplicateDecisions() {
+        return replicateDecisions;
+    }
+
+    @Override
+    public synchronized long getKillReplicaDecisions() {
+        return killReplicaDecisions;
+    }
+
+    @Override
+    public synchronized long getDeferredReplicas() {
+        return deferredReplicas;
+    }
+
+    @Override
+    public synchronized long getSkippedCycles() {
+        return skippedCycles;
+    }
+
+    @Override
+    public synchronized long getDroppedUpdates() {
+        return droppedUpdates;
+    }
+
+    @Override
+    public synchronized Map<String, Long> getPhaseQuantiles() {
+        return new LinkedHashMap<>(phaseQuantiles);
+    }
+
+    @Override
+    public synchronized double getJobErrorRate() {
+        return jobErrorRate;
+    }
+
+    @Override
+    public synchronized double getInvocationErrorRate() {
+        return invocationErrorRate;
+    }
+
+    @Override
+    public synchronized boolean isKillAllJobs() {
+        return killAllJobs;
+    }
+}
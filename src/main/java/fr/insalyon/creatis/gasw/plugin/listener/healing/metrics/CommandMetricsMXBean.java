@@ -0,0 +1,103 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the healing of a command. Durations are in milliseconds.
+ */
+public interface CommandMetricsMXBean {
+
+    String getCommand();
+
+    long getCycles();
+
+    long getLastCycleDuration();
+
+    long getMaxCycleDuration();
+
+    /**
+     * @return how late the last cycle started compared to its schedule
+     */
+    long getLastCycleLag();
+
+    long getMaxCycleLag();
+
+    int getLastCycleDAOCalls();
+
+    long getTotalDAOCalls();
+
+    /**
+     * @return time spent in database calls during the last cycle
+     */
+    long getLastCycleDAOLatency();
+
+    int getLastCycleJobsEvaluated();
+
+    long getTotalJobsEvaluated();
+
+    long getReplicateDecisions();
+
+    long getKillReplicaDecisions();
+
+    /**
+     * @return the number of replicas not submitted for lack of replica
+     * budget
+     */
+    long getDeferredReplicas();
+
+    /**
+     * @return the number of cycles skipped while the database access was
+     * suspended after repeated failures
+     */
+    long getSkippedCycles();
+
+    /**
+     * @return the number of decided job statuses that could not be written
+     * after all the retries
+     */
+    long getDroppedUpdates();
+
+    /**
+     * @return median, p90 and p99 of each phase, with keys such as
+     * "setup.p50" or "execution.p99"
+     */
+    Map<String, Long> getPhaseQuantiles();
+
+    double getJobErrorRate();
+
+    double getInvocationErrorRate();
+
+    boolean isKillAllJobs();
+}
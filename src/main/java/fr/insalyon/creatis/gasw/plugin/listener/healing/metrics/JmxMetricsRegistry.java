@@ -0,0 +1,95 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registers the metrics of each command in the platform MBean server, as
+ * fr.insalyon.creatis.gasw.plugin.listener.healing:type=CommandState,command=...
+ */
+public class JmxMetricsRegistry implements MetricsRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(JmxMetricsRegistry.class);
+    private static final String DOMAIN = "fr.insalyon.creatis.gasw.plugin.listener.healing";
+    private final MBeanServer server;
+    private final Map<ObjectName, CommandMetrics> registered;
+
+    public JmxMetricsRegistry() {
+
+        this.server = ManagementFactory.getPlatformMBeanServer();
+        this.registered = new HashMap<>();
+    }
+
+    @Override
+    public synchronized void register(CommandMetrics metrics) {
+
+        try {
+            ObjectName name = getObjectName(metrics);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(metrics, name);
+            registered.put(name, metrics);
+
+        } catch (JMException ex) {
+            logger.warn("Unable to register the metrics of {}: {}", metrics.getCommand(), ex.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void unregister(CommandMetrics metrics) {
+
+        try {
+            ObjectName name = getObjectName(metrics);
+            // a newer registration of the same command is kept
+            if (registered.get(name) == metrics) {
+                registered.remove(name);
+                server.unregisterMBean(name);
+            }
+        } catch (JMException ex) {
+            logger.warn("Unable to unregister the metrics of {}: {}", metrics.getCommand(), ex.getMessage());
+        }
+    }
+
+    private ObjectName getObjectName(CommandMetrics metrics) throws JMException {
+        return new ObjectName(DOMAIN + ":type=CommandState,command=" + ObjectName.quote(metrics.getCommand()));
+    }
+}
@@ -0,0 +1,187 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import fr.insalyon.creatis.gasw.GaswExitCode;
+import fr.insalyon.creatis.gasw.GaswOutput;
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.bean.JobMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.InMemoryHealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.HealingContext;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.HealingScheduler;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.JobNotifier;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.metrics.CommandMetrics;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.metrics.MetricsRegistry;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.jupiter.api.Test;
+
+public class HealingListenerTest {
+
+    private static final int COMMANDS = 20;
+    private static final int THREADS = 16;
+    private static final int JOBS_PER_THREAD = 500;
+
+    @Test
+    public void createsOneCommandStatePerCommandUnderConcurrentEvents() throws Exception {
+
+        CountingScheduler scheduler = new CountingScheduler();
+        Map<String, AtomicInteger> registrations = new ConcurrentHashMap<>();
+        MetricsRegistry metrics = new MetricsRegistry() {
+            @Override
+            public void register(CommandMetrics commandMetrics) {
+                registrations.computeIfAbsent(commandMetrics.getCommand(), c -> new AtomicInteger()).incrementAndGet();
+            }
+
+            @Override
+            public void unregister(CommandMetrics commandMetrics) {
+            }
+        };
+        HealingListener listener = new HealingListener(HealingContext.builder()
+                .configuration(HealingConfiguration.create(new PropertiesConfiguration(), 3))
+                .scheduler(scheduler)
+                .dao(new InMemoryHealingDAO())
+                .notifier(new NoNotifier())
+                .metrics(metrics)
+                .build());
+        listener.load();
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                results.add(threads.submit((Callable<Void>) () -> {
+                    start.await();
+                    for (int i = 0; i < JOBS_PER_THREAD; i++) {
+                        sendEvents(listener, thread * JOBS_PER_THREAD + i);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<Void> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertEquals(COMMANDS, registrations.size());
+        for (Map.Entry<String, AtomicInteger> registration : registrations.entrySet()) {
+            assertEquals(1, registration.getValue().get(), registration.getKey());
+        }
+        assertEquals(COMMANDS, scheduler.scheduled.get());
+        listener.terminate();
+        assertTrue(scheduler.shutdown);
+    }
+
+    private static void sendEvents(HealingListener listener, int n) throws Exception {
+
+        String command = "command" + (n % COMMANDS);
+        String jobID = command + "-" + (1000000 + n) + ".jdl";
+        Job job = new Job();
+        job.setId(jobID);
+        job.setCommand(command);
+        job.setInvocationID(n);
+        job.setStatus(GaswStatus.RUNNING);
+        listener.jobSubmitted(job);
+        long time = 1000L * n;
+        for (GaswMinorStatus status : new GaswMinorStatus[]{GaswMinorStatus.Started,
+            GaswMinorStatus.Inputs, GaswMinorStatus.Application, GaswMinorStatus.Outputs}) {
+            listener.jobMinorStatusReported(new JobMinorStatus(job, status, new Date(time)));
+            time += 1000;
+        }
+        listener.jobFinished(new GaswOutput(jobID, GaswExitCode.SUCCESS, null, null, null, null, null, null));
+    }
+
+    /**
+     * Counts the scheduled cycles without running them.
+     */
+    private static class CountingScheduler implements HealingScheduler {
+
+        private final AtomicInteger scheduled = new AtomicInteger();
+        private volatile boolean shutdown;
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable task, long delay) {
+
+            scheduled.incrementAndGet();
+            return null;
+        }
+
+        @Override
+        public long jitter(long period) {
+            return 0;
+        }
+
+        @Override
+        public void invokeAll(List<Callable<Void>> tasks) {
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+    }
+
+    private static class NoNotifier implements JobNotifier {
+
+        @Override
+        public GaswOutput getOutputFromLastFailedJob(String jobID) {
+            return null;
+        }
+
+        @Override
+        public void addFinishedJob(GaswOutput gaswOutput) {
+        }
+    }
+}
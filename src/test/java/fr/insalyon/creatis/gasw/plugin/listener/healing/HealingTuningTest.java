@@ -0,0 +1,72 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.InMemoryHealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.execution.HealingContext;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.simulation.VirtualClock;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.simulation.VirtualScheduler;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.jupiter.api.Test;
+
+public class HealingTuningTest {
+
+    @Test
+    public void tunesTheConfigurationOfTheContext() {
+
+        VirtualClock clock = new VirtualClock(0);
+        HealingConfiguration configuration = HealingConfiguration.create(new PropertiesConfiguration(), 3);
+        HealingContext context = HealingContext.builder()
+                .configuration(configuration)
+                .scheduler(new VirtualScheduler(clock, 1))
+                .clock(clock)
+                .dao(new InMemoryHealingDAO())
+                .build();
+        HealingTuning tuning = new HealingTuning(context);
+        assertEquals(15, tuning.getSleepTime());
+
+        tuning.setSleepTime(30);
+        tuning.setMaxReplicas(4);
+        assertEquals(30, tuning.getSleepTime());
+        assertEquals(30000, context.getConfiguration().getSleepTime());
+        assertEquals(4, context.getConfiguration().getMaxReplicas());
+        // a published configuration is never modified
+        assertEquals(15000, configuration.getSleepTime());
+
+        assertThrows(IllegalArgumentException.class, () -> tuning.setMaxReplicas(0));
+        assertEquals(4, tuning.getMaxReplicas());
+    }
+}
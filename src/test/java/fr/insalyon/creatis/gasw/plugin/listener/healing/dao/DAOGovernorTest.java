@@ -0,0 +1,196 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.dao.DAOException;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.simulation.VirtualClock;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DAOGovernorTest {
+
+    private VirtualClock clock;
+    private DAOGovernor governor;
+
+    @BeforeEach
+    public void setUp() {
+
+        clock = new VirtualClock(1000000);
+        governor = new DAOGovernor(100, 8, 2, 60000, clock);
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+
+        governor.failure(governor.acquire(), 0);
+        assertTrue(governor.isAvailable());
+        governor.failure(governor.acquire(), 0);
+        assertFalse(governor.isAvailable());
+        assertEquals(-1, governor.acquire());
+        assertEquals(60000, governor.getRemainingOpenTime());
+    }
+
+    @Test
+    public void letsASingleProbeThroughOnceHalfOpen() {
+
+        open();
+        clock.advance(60000);
+        assertTrue(governor.isAvailable());
+        long probe = governor.acquire();
+        assertTrue(probe >= 0);
+        assertFalse(governor.isAvailable());
+        assertEquals(-1, governor.acquire());
+
+        governor.success(probe, 0);
+        assertTrue(governor.isAvailable());
+        assertTrue(governor.acquire() >= 0);
+        assertEquals(8, governor.getDelayFactor(), 1e-9);
+    }
+
+    @Test
+    public void reopensForLongerWhenTheProbeFails() {
+
+        open();
+        clock.advance(60000);
+        governor.failure(governor.acquire(), 0);
+        assertFalse(governor.isAvailable());
+        assertEquals(120000, governor.getRemainingOpenTime());
+    }
+
+    @Test
+    public void ignoresTheCallsStartedBeforeOpening() {
+
+        long slow = governor.acquire();
+        open();
+        governor.success(slow, 0);
+        assertFalse(governor.isAvailable());
+
+        clock.advance(60000);
+        long probe = governor.acquire();
+        governor.failure(slow, 0);
+        assertFalse(governor.isAvailable());
+        governor.success(probe, 0);
+        assertTrue(governor.isAvailable());
+    }
+
+    @Test
+    public void replacesAProbeThatNeverReturned() {
+
+        open();
+        clock.advance(60000);
+        long lost = governor.acquire();
+        clock.advance(60000);
+        long probe = governor.acquire();
+        assertTrue(probe > lost);
+        governor.success(lost, 0);
+        assertEquals(-1, governor.acquire());
+        governor.success(probe, 0);
+        assertTrue(governor.isAvailable());
+    }
+
+    @Test
+    public void forgetsTheLatencyOfAnIdleDatabase() {
+
+        governor.success(governor.acquire(), 1000000000);
+        assertEquals(2, governor.getDelayFactor(), 1e-9);
+        clock.advance(60000);
+        assertEquals(1, governor.getDelayFactor(), 1e-9);
+    }
+
+    @Test
+    public void doesNotThrottleALargeHealthyWorkflow() throws DAOException {
+
+        SlowDAO database = new SlowDAO(100);
+        for (int i = 0; i < 10000; i++) {
+            Job job = new Job();
+            job.setId("command-" + i + ".jdl");
+            job.setCommand("command");
+            job.setInvocationID(i);
+            job.setStatus(GaswStatus.RUNNING);
+            database.add(job);
+        }
+        governor = new DAOGovernor(10, 8, 2, 60000, clock);
+        GovernedHealingDAO dao = new GovernedHealingDAO(database, governor);
+
+        assertEquals(10000, dao.getActiveJobs().size());
+        assertEquals(1, governor.getDelayFactor(), 1e-9);
+        // a slow call returning a single row still stretches the cycles
+        dao.getNumberOfCompletedJobsByInvocationID(1);
+        assertTrue(governor.getDelayFactor() > 1);
+    }
+
+    private void open() {
+
+        governor.failure(governor.acquire(), 0);
+        governor.failure(governor.acquire(), 0);
+    }
+
+    private static class SlowDAO extends InMemoryHealingDAO {
+
+        private final long latency;
+
+        SlowDAO(long latency) {
+            this.latency = latency;
+        }
+
+        @Override
+        public List<Job> getActiveJobs() {
+
+            sleep();
+            return super.getActiveJobs();
+        }
+
+        @Override
+        public long getNumberOfCompletedJobsByInvocationID(int invocationID) {
+
+            sleep();
+            return super.getNumberOfCompletedJobsByInvocationID(invocationID);
+        }
+
+        private void sleep() {
+
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
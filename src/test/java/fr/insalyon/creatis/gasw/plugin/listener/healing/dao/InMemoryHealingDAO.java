@@ -0,0 +1,217 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.dao;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.bean.JobMinorStatus;
+import fr.insalyon.creatis.gasw.dao.DAOException;
+import fr.insalyon.creatis.gasw.execution.GaswMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stand-in for the GASW database, used to run the healing in
+ * benchmarks and simulations. Jobs are kept in submission order and every
+ * call is counted.
+ */
+public class InMemoryHealingDAO implements HealingDAO {
+
+    private final Map<String, Job> jobs;
+    private final Map<String, List<JobMinorStatus>> minorStatuses;
+    private final AtomicLong calls;
+
+    public InMemoryHealingDAO() {
+
+        this.jobs = new LinkedHashMap<>();
+        this.minorStatuses = new LinkedHashMap<>();
+        this.calls = new AtomicLong();
+    }
+
+    public synchronized void add(Job job) {
+        jobs.put(job.getId(), job);
+    }
+
+    public synchronized void addMinorStatus(Job job, GaswMinorStatus status, long time) {
+
+        minorStatuses.computeIfAbsent(job.getId(), id -> new ArrayList<>())
+                .add(new JobMinorStatus(job, status, new Date(time)));
+    }
+
+    public synchronized Job getJob(String jobID) {
+        return jobs.get(jobID);
+    }
+
+    public synchronized List<Job> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    /**
+     * @return the number of calls made through the HealingDAO interface
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    @Override
+    public synchronized List<Job> getActiveJobs() {
+
+        calls.incrementAndGet();
+        List<Job> list = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            if (isActive(job.getStatus())) {
+                list.add(job);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public synchronized List<Job> getActiveJobsByCommand(String command) {
+
+        calls.incrementAndGet();
+        List<Job> list = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            if (command.equals(job.getCommand()) && isActive(job.getStatus())) {
+                list.add(job);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public synchronized List<Job> getJobsByCommand(String command) {
+
+        calls.incrementAndGet();
+        List<Job> list = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            if (command.equals(job.getCommand())) {
+                list.add(job);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public synchronized List<Job> getFailedByCommand(String command) {
+
+        calls.incrementAndGet();
+        List<Job> list = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            if (command.equals(job.getCommand()) && isFailed(job.getStatus())) {
+                list.add(job);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public synchronized List<Integer> getInvocationsByCommand(String command) {
+
+        calls.incrementAndGet();
+        TreeSet<Integer> invocations = new TreeSet<>();
+        for (Job job : jobs.values()) {
+            if (command.equals(job.getCommand())) {
+                invocations.add(job.getInvocationID());
+            }
+        }
+        return new ArrayList<>(invocations);
+    }
+
+    @Override
+    public synchronized long getNumberOfCompletedJobsByInvocationID(int invocationID) {
+
+        calls.incrementAndGet();
+        return jobs.values().stream()
+                .filter(job -> job.getInvocationID() == invocationID && job.getStatus() == GaswStatus.COMPLETED)
+                .count();
+    }
+
+    @Override
+    public synchronized List<JobMinorStatus> getExecutionMinorStatus(String jobID) {
+
+        calls.incrementAndGet();
+        return new ArrayList<>(minorStatuses.getOrDefault(jobID, Collections.emptyList()));
+    }
+
+    @Override
+    public synchronized void update(Job job) {
+
+        calls.incrementAndGet();
+        jobs.put(job.getId(), job);
+    }
+
+    @Override
+    public synchronized void update(Collection<Job> updated) throws DAOException {
+
+        calls.incrementAndGet();
+        for (Job job : updated) {
+            jobs.put(job.getId(), job);
+        }
+    }
+
+    public static boolean isActive(GaswStatus status) {
+
+        switch (status) {
+            case SUCCESSFULLY_SUBMITTED:
+            case QUEUED:
+            case RUNNING:
+            case KILL:
+            case REPLICATE:
+            case RESCHEDULE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public static boolean isFailed(GaswStatus status) {
+
+        switch (status) {
+            case ERROR:
+            case ERROR_HELD:
+            case STALLED:
+            case STALLED_HELD:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.dao.DAOException;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.simulation.VirtualClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SharedActiveJobsDAOTest {
+
+    private InMemoryHealingDAO database;
+    private VirtualClock clock;
+    private SharedActiveJobsDAO dao;
+
+    @BeforeEach
+    public void setUp() {
+
+        database = new InMemoryHealingDAO();
+        for (int i = 0; i < 10; i++) {
+            database.add(job("command" + (i % 2), i, GaswStatus.RUNNING));
+        }
+        database.add(job("command0", 10, GaswStatus.COMPLETED));
+        clock = new VirtualClock(1000000);
+        dao = new SharedActiveJobsDAO(database, 5000, clock);
+    }
+
+    @Test
+    public void sharesOneLoadBetweenCommands() throws DAOException {
+
+        assertEquals(5, dao.getActiveJobsByCommand("command0").size());
+        assertEquals(5, dao.getActiveJobsByCommand("command1").size());
+        assertEquals(0, dao.getActiveJobsByCommand("command2").size());
+        assertEquals(10, dao.getActiveJobs().size());
+        assertEquals(1, database.getCalls());
+    }
+
+    @Test
+    public void loadsAgainWhenTooOld() throws DAOException {
+
+        dao.getActiveJobsByCommand("command0");
+        clock.advance(4999);
+        dao.getActiveJobsByCommand("command0");
+        assertEquals(1, database.getCalls());
+        clock.advance(1);
+        dao.getActiveJobsByCommand("command0");
+        assertEquals(2, database.getCalls());
+    }
+
+    @Test
+    public void loadsAgainAfterAnUpdate() throws DAOException {
+
+        Job job = dao.getActiveJobsByCommand("command1").get(0);
+        job.setStatus(GaswStatus.COMPLETED);
+        dao.update(job);
+        assertEquals(4, dao.getActiveJobsByCommand("command1").size());
+        assertEquals(3, database.getCalls());
+    }
+
+    private static Job job(String command, int invocation, GaswStatus status) {
+
+        Job job = new Job();
+        job.setId(command + "-" + invocation + ".jdl");
+        job.setCommand(command);
+        job.setInvocationID(invocation);
+        job.setStatus(status);
+        return job;
+    }
+}
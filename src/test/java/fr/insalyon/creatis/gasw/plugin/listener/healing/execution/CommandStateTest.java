@@ -0,0 +1,273 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.execution.GaswMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.HealingConfiguration;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.HealingConstants;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.DAOGovernor;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.InMemoryHealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.journal.DecisionJournal;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.metrics.MetricsRegistry;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.simulation.VirtualClock;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.simulation.VirtualScheduler;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Healing cycles of a command on a virtual clock, with phase medians of 1 s
+ * for the setup, the input and the output, and of 10 s for the execution.
+ */
+public class CommandStateTest {
+
+    private VirtualClock clock;
+    private VirtualScheduler scheduler;
+    private InMemoryHealingDAO dao;
+    private JobTimelines timelines;
+    private CommandState state;
+
+    @Test
+    public void replicatesTheJobsBlockedInAPhase() {
+
+        // 5 times the setup median, but 0.65 times the blocked duration
+        long time = start();
+        Job setup = running(1, 1, time - 5000);
+        Job execution = running(2, 2, time - 32000, time - 31000, time - 30000);
+        scheduler.runNext();
+        assertEquals(GaswStatus.RUNNING, setup.getStatus());
+        assertEquals(GaswStatus.REPLICATE, execution.getStatus());
+
+        time = start(HealingConstants.LAB_BLOCKED_COEFFICIENT_SETUP, "3");
+        setup = running(1, 1, time - 5000);
+        Job shortSetup = running(2, 2, time - 2000);
+        scheduler.runNext();
+        assertEquals(GaswStatus.REPLICATE, setup.getStatus());
+        assertEquals(GaswStatus.RUNNING, shortSetup.getStatus());
+    }
+
+    @Test
+    public void replicatesSoonerInTheTail() {
+
+        for (String fraction : new String[]{"0", "0.2"}) {
+            long time = start(HealingConstants.LAB_TAIL_FRACTION, fraction,
+                    HealingConstants.LAB_TAIL_BLOCKED_COEFFICIENT, "1.2");
+            for (int i = 1; i < 10; i++) {
+                add(ErrorRatesTest.job(i, i, GaswStatus.COMPLETED));
+            }
+            // 1.5 times the median duration
+            Job last = running(10, 10, time - 18500, time - 17500, time - 16500);
+            scheduler.runNext();
+            assertEquals(fraction.equals("0") ? GaswStatus.RUNNING : GaswStatus.REPLICATE, last.getStatus());
+        }
+    }
+
+    @Test
+    public void wakesUpTheNextCycleOnAJobEnd() {
+
+        // the cycles of the adaptive mode are 10 s apart
+        long time = start(HealingConstants.LAB_ADAPTIVE, "true",
+                HealingConstants.LAB_ADAPTIVE_MEDIAN_RATIO, "10");
+        // blocked from 23 s of execution on
+        Job job = running(1, 1, time - 22000, time - 21000, time - 20000);
+        scheduler.runNext();
+        assertEquals(GaswStatus.RUNNING, job.getStatus());
+        assertEquals(time + 10000, scheduler.nextTime());
+
+        state.jobFinished("command-2.jdl", false);
+        assertEquals(time + 5000, scheduler.nextTime());
+        scheduler.runNext();
+        assertEquals(GaswStatus.REPLICATE, job.getStatus());
+    }
+
+    @Test
+    public void decidesTheSameWithParallelEvaluation() throws InterruptedException {
+
+        Map<String, GaswStatus> sequential = runWorkload(1, null);
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            assertEquals(sequential, runWorkload(4, threads));
+        } finally {
+            threads.shutdownNow();
+        }
+        assertEquals(5, sequential.values().stream().filter(status -> status == GaswStatus.REPLICATE).count());
+        assertEquals(10, sequential.values().stream().filter(status -> status == GaswStatus.KILL_REPLICA).count());
+        // the budget goes to the most blocked jobs
+        for (int i = 26; i <= 30; i++) {
+            assertEquals(GaswStatus.REPLICATE, sequential.get("command-" + i + ".jdl"));
+        }
+    }
+
+    /**
+     * Runs a cycle over 30 single jobs getting more and more blocked, with a
+     * budget of 5 replicas, and 10 invocations whose late replica is killed.
+     */
+    private Map<String, GaswStatus> runWorkload(int parallelism, ExecutorService threads) {
+
+        clock = new VirtualClock(1000000);
+        VirtualScheduler cycleScheduler = new VirtualScheduler(clock, 1);
+        long time = start(threads == null ? cycleScheduler : new ThreadedScheduler(cycleScheduler, threads),
+                HealingConstants.LAB_EVALUATION_PARALLELISM, Integer.toString(parallelism),
+                HealingConstants.LAB_REPLICA_BUDGET_CAPACITY, "5",
+                HealingConstants.LAB_REPLICA_BUDGET_RATE, "0.001");
+        for (int i = 1; i <= 30; i++) {
+            running(i, i, time - 20000 - 1000 * i, time - 19000 - 1000 * i, time - 18000 - 1000 * i);
+        }
+        for (int i = 31; i <= 40; i++) {
+            running(2 * i, i, time - 13000, time - 12000, time - 11000, time - 1000);
+            running(2 * i + 1, i, time - 30000);
+        }
+        assertTrue(scheduler.runNext());
+
+        Map<String, GaswStatus> statuses = new TreeMap<>();
+        for (Job job : dao.getJobs()) {
+            statuses.put(job.getId(), job.getStatus());
+        }
+        return statuses;
+    }
+
+    private long start(String... properties) {
+
+        clock = new VirtualClock(1000000);
+        return start(new VirtualScheduler(clock, 1), properties);
+    }
+
+    /**
+     * Starts the command state on a new database.
+     *
+     * @param properties configuration keys and values
+     * @return the time of the first cycle
+     */
+    private long start(HealingScheduler cycleScheduler, String... properties) {
+
+        scheduler = cycleScheduler instanceof ThreadedScheduler
+                ? ((ThreadedScheduler) cycleScheduler).scheduler : (VirtualScheduler) cycleScheduler;
+        dao = new InMemoryHealingDAO();
+        timelines = new JobTimelines();
+        PropertiesConfiguration config = new PropertiesConfiguration();
+        for (int i = 0; i < properties.length; i += 2) {
+            config.setProperty(properties[i], properties[i + 1]);
+        }
+        HealingContext context = HealingContext.builder()
+                .configuration(HealingConfiguration.create(config, 3))
+                .scheduler(cycleScheduler)
+                .clock(clock)
+                .dao(dao)
+                .timelines(timelines)
+                .governor(DAOGovernor.NONE)
+                .metrics(MetricsRegistry.NONE)
+                .journal(DecisionJournal.NONE)
+                .build();
+        state = new CommandState("command", context);
+        for (int i = 0; i < 10; i++) {
+            state.addSetupTime("site", 1000);
+            state.addDownloadTime("site", 1000);
+            state.addExecutionTime("site", 10000);
+            state.addUploadTime("site", 1000);
+        }
+        state.start();
+        return scheduler.nextTime();
+    }
+
+    private Job add(Job job) {
+
+        dao.add(job);
+        return job;
+    }
+
+    /**
+     * @param times times of the Started, Inputs, Application and Outputs
+     * minor statuses reported so far
+     */
+    private Job running(int id, int invocation, long... times) {
+
+        Job job = add(ErrorRatesTest.job(id, invocation, GaswStatus.RUNNING));
+        GaswMinorStatus[] statuses = {GaswMinorStatus.Started, GaswMinorStatus.Inputs,
+            GaswMinorStatus.Application, GaswMinorStatus.Outputs};
+        for (int i = 0; i < times.length; i++) {
+            timelines.record(job.getId(), statuses[i], times[i]);
+        }
+        return job;
+    }
+
+    /**
+     * Runs the cycles on a virtual clock and their tasks on threads.
+     */
+    private static class ThreadedScheduler implements HealingScheduler {
+
+        private final VirtualScheduler scheduler;
+        private final ExecutorService threads;
+
+        ThreadedScheduler(VirtualScheduler scheduler, ExecutorService threads) {
+
+            this.scheduler = scheduler;
+            this.threads = threads;
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable task, long delay) {
+            return scheduler.schedule(task, delay);
+        }
+
+        @Override
+        public long jitter(long period) {
+            return scheduler.jitter(period);
+        }
+
+        @Override
+        public void invokeAll(List<Callable<Void>> tasks) throws InterruptedException, ExecutionException {
+
+            for (Future<Void> result : threads.invokeAll(tasks)) {
+                result.get();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            scheduler.shutdown();
+        }
+    }
+}
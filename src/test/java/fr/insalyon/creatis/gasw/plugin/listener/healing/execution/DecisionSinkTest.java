@@ -0,0 +1,152 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.dao.DAOException;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.InMemoryHealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.PartialUpdateException;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.metrics.CommandMetrics;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.simulation.VirtualClock;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.simulation.VirtualScheduler;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class DecisionSinkTest {
+
+    @Test
+    public void writesTheLastStatusOfEachJobInOneBatch() throws DAOException {
+
+        InMemoryHealingDAO dao = new InMemoryHealingDAO();
+        DecisionSink sink = new DecisionSink(3, new DirectScheduler(), new CommandMetrics("command"));
+        Job job1 = ErrorRatesTest.job(1, 1, GaswStatus.REPLICATE);
+        Job job2 = ErrorRatesTest.job(2, 1, GaswStatus.KILL_REPLICA);
+        sink.record(job1);
+        sink.record(job2);
+        job1.setStatus(GaswStatus.KILL_REPLICA);
+        sink.record(job1);
+
+        assertEquals(2, sink.size());
+        assertEquals(2, sink.count(GaswStatus.KILL_REPLICA));
+        assertEquals(0, sink.flush(dao));
+        assertEquals(1, sink.getDAOCalls());
+        assertEquals(1, dao.getCalls());
+        assertEquals(GaswStatus.KILL_REPLICA, dao.getJob(job1.getId()).getStatus());
+        assertEquals(0, sink.size());
+    }
+
+    @Test
+    public void retriesOnlyTheUnwrittenJobsLater() {
+
+        VirtualClock clock = new VirtualClock(0);
+        VirtualScheduler scheduler = new VirtualScheduler(clock, 1);
+        FailingDAO dao = new FailingDAO(1, 1);
+        DecisionSink sink = new DecisionSink(2, scheduler, new CommandMetrics("command"));
+        for (int i = 1; i <= 3; i++) {
+            sink.record(ErrorRatesTest.job(i, i, GaswStatus.REPLICATE));
+        }
+        assertEquals(2, sink.flush(dao));
+        assertTrue(sink.isRetrying());
+
+        assertTrue(scheduler.runNext());
+        assertEquals(500, clock.millis());
+        assertFalse(sink.isRetrying());
+        assertEquals(2, sink.getDAOCalls());
+        assertEquals(0, sink.getFailures());
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(1, dao.writes.get("command-" + i + ".jdl"));
+        }
+    }
+
+    @Test
+    public void dropsTheJobsStillUnwrittenAfterTheRetries() {
+
+        VirtualClock clock = new VirtualClock(0);
+        VirtualScheduler scheduler = new VirtualScheduler(clock, 1);
+        FailingDAO dao = new FailingDAO(5, 0);
+        CommandMetrics metrics = new CommandMetrics("command");
+        DecisionSink sink = new DecisionSink(2, scheduler, metrics);
+        sink.record(ErrorRatesTest.job(1, 1, GaswStatus.REPLICATE));
+        sink.record(ErrorRatesTest.job(2, 2, GaswStatus.KILL_REPLICA));
+        assertEquals(2, sink.flush(dao));
+
+        assertTrue(scheduler.runNext());
+        assertTrue(scheduler.runNext());
+        assertEquals(1500, clock.millis());
+        assertFalse(scheduler.runNext());
+        assertFalse(sink.isRetrying());
+        assertEquals(3, sink.getDAOCalls());
+        assertEquals(2, sink.getFailures());
+        assertEquals(2, metrics.getDroppedUpdates());
+        metrics.cycleCompleted(0, 0);
+        assertEquals(3, metrics.getTotalDAOCalls());
+    }
+
+    /**
+     * Writes some jobs of a batch, then fails.
+     */
+    private static class FailingDAO extends InMemoryHealingDAO {
+
+        private int failures;
+        private final int written;
+        private final Map<String, Integer> writes = new HashMap<>();
+
+        FailingDAO(int failures, int written) {
+            this.failures = failures;
+            this.written = written;
+        }
+
+        @Override
+        public synchronized void update(Collection<Job> jobs) throws DAOException {
+
+            int updated = 0;
+            for (Job job : jobs) {
+                if (failures > 0 && updated == written) {
+                    failures--;
+                    DAOException cause = new DAOException("database unreachable");
+                    throw updated == 0 ? cause : new PartialUpdateException(updated, cause);
+                }
+                update(job);
+                writes.merge(job.getId(), 1, Integer::sum);
+                updated++;
+            }
+        }
+    }
+}
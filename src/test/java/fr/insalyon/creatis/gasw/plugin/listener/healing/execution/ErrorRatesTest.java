@@ -0,0 +1,138 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.simulation.VirtualClock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ErrorRatesTest {
+
+    private VirtualClock clock;
+
+    @BeforeEach
+    public void setUp() {
+
+        clock = new VirtualClock(1000000);
+    }
+
+    @Test
+    public void countsFailedJobsAndInvocations() {
+
+        ErrorRates rates = new ErrorRates(clock, 0);
+        rates.jobSubmitted(job(1, 1, GaswStatus.RUNNING));
+        rates.jobSubmitted(job(2, 1, GaswStatus.RUNNING));
+        rates.jobSubmitted(job(3, 2, GaswStatus.RUNNING));
+        rates.jobSubmitted(job(4, 3, GaswStatus.RUNNING));
+        rates.jobFinished("command-1.jdl", true);
+        rates.jobFinished("command-3.jdl", false);
+
+        assertEquals(3, rates.getInvocations());
+        assertEquals(25.0, rates.getJobErrorRate(), 1e-9);
+        assertEquals(100.0 / 3, rates.getInvocationErrorRate(), 1e-9);
+        assertEquals(2, rates.getPendingJobs());
+    }
+
+    @Test
+    public void forgetsJobsEndedWithoutEvent() {
+
+        ErrorRates rates = new ErrorRates(clock, 0);
+        rates.jobSubmitted(job(1, 1, GaswStatus.RUNNING));
+        rates.jobSubmitted(job(2, 1, GaswStatus.RUNNING));
+        rates.jobSubmitted(job(3, 2, GaswStatus.RUNNING));
+
+        List<Job> allJobs = Arrays.asList(job(1, 1, GaswStatus.CANCELLED_REPLICA),
+                job(2, 1, GaswStatus.DELETED), job(3, 2, GaswStatus.RUNNING));
+        rates.reconcile(allJobs, Collections.emptyList(), Arrays.asList(1, 2), clock.millis());
+        assertEquals(1, rates.getPendingJobs());
+        assertEquals(2, rates.getInvocations());
+    }
+
+    @Test
+    public void resolvesEveryTerminalStatus() {
+
+        ErrorRates rates = new ErrorRates(clock, 0);
+        for (int i = 1; i <= 6; i++) {
+            rates.jobSubmitted(job(i, i, GaswStatus.RUNNING));
+        }
+        List<Job> allJobs = Arrays.asList(job(1, 1, GaswStatus.ERROR), job(2, 2, GaswStatus.STALLED),
+                job(3, 3, GaswStatus.KILL), job(4, 4, GaswStatus.DELETED),
+                job(5, 5, GaswStatus.COMPLETED), job(6, 6, GaswStatus.CANCELLED));
+        rates.reconcile(allJobs, Collections.emptyList(), Arrays.asList(1, 2, 3, 4, 5, 6), clock.millis());
+
+        assertEquals(2, rates.getResolvedFailures());
+        assertEquals(2, rates.getResolvedSuccesses());
+        assertEquals(0, rates.getTrackedOutcomes());
+    }
+
+    @Test
+    public void dropsUnknownAndAgedOutJobs() {
+
+        ErrorRates rates = new ErrorRates(clock, 3600000);
+        rates.jobSubmitted(job(1, 1, GaswStatus.RUNNING));
+        clock.advance(10000);
+        rates.jobSubmitted(job(2, 2, GaswStatus.RUNNING));
+        rates.jobFinished("command-2.jdl", false);
+        long loadTime = clock.millis();
+        // submitted while the jobs were loaded
+        rates.jobSubmitted(job(3, 3, GaswStatus.RUNNING));
+
+        rates.reconcile(Arrays.asList(job(2, 2, GaswStatus.COMPLETED)),
+                Collections.emptyList(), Arrays.asList(2), loadTime);
+        assertEquals(1, rates.getResolvedSuccesses());
+        assertEquals(1, rates.getTrackedOutcomes());
+
+        clock.advance(3600001);
+        rates.reconcile(Arrays.asList(job(2, 2, GaswStatus.COMPLETED), job(3, 3, GaswStatus.RUNNING)),
+                Collections.emptyList(), Arrays.asList(2, 3), clock.millis());
+        assertEquals(0, rates.getTrackedOutcomes());
+    }
+
+    static Job job(int id, int invocation, GaswStatus status) {
+
+        Job job = new Job();
+        job.setId("command-" + id + ".jdl");
+        job.setFileName("command-" + id);
+        job.setCommand("command");
+        job.setInvocationID(invocation);
+        job.setStatus(status);
+        return job;
+    }
+}
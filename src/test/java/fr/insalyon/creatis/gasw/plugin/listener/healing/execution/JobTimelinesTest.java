@@ -0,0 +1,132 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.dao.DAOException;
+import fr.insalyon.creatis.gasw.execution.GaswMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.InMemoryHealingDAO;
+import org.junit.jupiter.api.Test;
+
+public class JobTimelinesTest {
+
+    @Test
+    public void recordsPhaseDurations() {
+
+        JobTimelines timelines = new JobTimelines();
+        assertEquals(-1, timelines.record("job", GaswMinorStatus.Started, 1000));
+        assertEquals(500, timelines.record("job", GaswMinorStatus.Inputs, 1500));
+        assertEquals(-1, timelines.record("job", GaswMinorStatus.Outputs, 3000));
+        assertArrayEquals(new long[]{1000, 1500, 0, 3000, 0}, timelines.get("job"));
+    }
+
+    @Test
+    public void detectsIncompleteTimelines() {
+
+        assertTrue(JobTimelines.isComplete(new long[]{1000, 1500, 2000, 0, 0}));
+        assertFalse(JobTimelines.isComplete(new long[]{0, 1500, 2000, 0, 0}));
+        assertFalse(JobTimelines.isComplete(new long[]{1000, 0, 2000, 0, 0}));
+        assertFalse(JobTimelines.isPartial(new long[JobTimelines.SIZE]));
+        assertTrue(JobTimelines.isPartial(new long[]{0, 1500, 0, 0, 0}));
+    }
+
+    @Test
+    public void doesNotBringBackEvictedJobs() {
+
+        JobTimelines timelines = new JobTimelines();
+        timelines.record("job", GaswMinorStatus.Started, 1000);
+        timelines.record("job", GaswMinorStatus.Inputs, 1500);
+        timelines.record("job", GaswMinorStatus.Application, 2000);
+        timelines.record("job", GaswMinorStatus.Outputs, 5000);
+        timelines.evict("job");
+        assertEquals(1000, timelines.record("job", GaswMinorStatus.Finished, 6000));
+        assertNull(timelines.get("job"));
+        assertEquals(0, timelines.size());
+    }
+
+    @Test
+    public void recordsLateStatusesWhileJobsAreEvicted() throws InterruptedException {
+
+        JobTimelines timelines = new JobTimelines();
+        int jobs = 20000;
+        for (int i = 0; i < jobs; i++) {
+            timelines.record("job-" + i, GaswMinorStatus.Started, 1000);
+        }
+        Thread evictor = new Thread(() -> {
+            for (int i = 0; i < jobs; i++) {
+                timelines.evict("job-" + i);
+            }
+        });
+        evictor.start();
+        // some statuses arrive after the eviction, of jobs that may have left the evicted ones
+        for (int i = 0; i < jobs; i++) {
+            long duration = timelines.record("job-" + i, GaswMinorStatus.Inputs, 1500);
+            assertTrue(duration == 500 || duration == -1);
+        }
+        evictor.join();
+    }
+
+    @Test
+    public void loadsPartialTimelinesFromTheDatabase() throws DAOException {
+
+        Job job = new Job();
+        job.setId("command-1.jdl");
+        job.setCommand("command");
+        job.setStatus(GaswStatus.RUNNING);
+        InMemoryHealingDAO dao = new InMemoryHealingDAO();
+        dao.add(job);
+        dao.addMinorStatus(job, GaswMinorStatus.Started, 1000);
+        dao.addMinorStatus(job, GaswMinorStatus.Inputs, 1500);
+        dao.addMinorStatus(job, GaswMinorStatus.Application, 2000);
+
+        // the listener was loaded after the job started
+        JobTimelines timelines = new JobTimelines();
+        timelines.record(job.getId(), GaswMinorStatus.Application, 2000);
+
+        CycleSnapshot snapshot = CycleSnapshot.load(dao, timelines, "command");
+        assertArrayEquals(new long[]{1000, 1500, 2000, 0, 0}, snapshot.getTimeline(job));
+        assertEquals(3, snapshot.getDAOCalls());
+        // the next cycles use the completed timeline
+        assertArrayEquals(new long[]{1000, 1500, 2000, 0, 0}, timelines.get(job.getId()));
+        snapshot = CycleSnapshot.load(dao, timelines, "command");
+        snapshot.getTimeline(job);
+        assertEquals(2, snapshot.getDAOCalls());
+    }
+}
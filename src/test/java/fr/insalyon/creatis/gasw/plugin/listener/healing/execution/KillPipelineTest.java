@@ -0,0 +1,132 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import fr.insalyon.creatis.gasw.GaswOutput;
+import fr.insalyon.creatis.gasw.bean.Job;
+import fr.insalyon.creatis.gasw.dao.DAOException;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.dao.InMemoryHealingDAO;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.journal.DecisionJournal;
+import fr.insalyon.creatis.gasw.plugin.listener.healing.metrics.CommandMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class KillPipelineTest {
+
+    @Test
+    public void killsActiveJobsAndReleasesHeldJobs() throws DAOException {
+
+        InMemoryHealingDAO dao = new InMemoryHealingDAO();
+        Job job1 = add(dao, 1, 1, GaswStatus.RUNNING);
+        Job replica1 = add(dao, 2, 1, GaswStatus.QUEUED);
+        Job held2 = add(dao, 3, 2, GaswStatus.ERROR_HELD);
+        add(dao, 4, 3, GaswStatus.COMPLETED);
+        Job held3 = add(dao, 5, 3, GaswStatus.STALLED_HELD);
+        RecordingNotifier notifier = new RecordingNotifier();
+        CommandMetrics metrics = new CommandMetrics("command");
+
+        KillPipeline pipeline = new KillPipeline("command", notifier, DecisionJournal.NONE,
+                new DirectScheduler(), metrics, 2, 1);
+        assertFalse(pipeline.run(dao));
+        assertEquals(GaswStatus.KILL, job1.getStatus());
+        assertEquals(GaswStatus.KILL_REPLICA, replica1.getStatus());
+        assertEquals(GaswStatus.ERROR, held2.getStatus());
+        // an invocation with a completed job is not released
+        assertEquals(GaswStatus.STALLED_HELD, held3.getStatus());
+        assertEquals(1, notifier.finished.size());
+        metrics.cycleCompleted(0, 0);
+        assertEquals(dao.getCalls(), metrics.getTotalDAOCalls());
+
+        job1.setStatus(GaswStatus.CANCELLED);
+        replica1.setStatus(GaswStatus.CANCELLED_REPLICA);
+        assertTrue(pipeline.run(dao));
+        assertEquals(1, notifier.finished.size());
+    }
+
+    @Test
+    public void retriesHeldJobsWhoseReleaseFailed() throws DAOException {
+
+        InMemoryHealingDAO dao = new InMemoryHealingDAO();
+        Job held = add(dao, 1, 1, GaswStatus.ERROR_HELD);
+        RecordingNotifier notifier = new RecordingNotifier();
+        notifier.failures = 1;
+
+        KillPipeline pipeline = new KillPipeline("command", notifier, DecisionJournal.NONE,
+                new DirectScheduler(), new CommandMetrics("command"), 2, 1);
+        pipeline.run(dao);
+        assertEquals(0, notifier.finished.size());
+
+        // the job was updated before the notification failed
+        held.setStatus(GaswStatus.ERROR_HELD);
+        pipeline.run(dao);
+        assertEquals(1, notifier.finished.size());
+        assertEquals(GaswStatus.ERROR, held.getStatus());
+
+        pipeline.run(dao);
+        assertEquals(1, notifier.finished.size());
+    }
+
+    private static Job add(InMemoryHealingDAO dao, int id, int invocation, GaswStatus status) {
+
+        Job job = ErrorRatesTest.job(id, invocation, status);
+        dao.add(job);
+        return job;
+    }
+
+    private static class RecordingNotifier implements JobNotifier {
+
+        private final List<GaswOutput> finished = new ArrayList<>();
+        private int failures;
+
+        @Override
+        public GaswOutput getOutputFromLastFailedJob(String jobID) {
+            return null;
+        }
+
+        @Override
+        public synchronized void addFinishedJob(GaswOutput gaswOutput) {
+
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("notification failed");
+            }
+            finished.add(gaswOutput);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class PhaseSketchTest {
+
+    @Test
+    public void isEmptyWithoutSamples() {
+
+        PhaseSketch sketch = new PhaseSketch();
+        assertEquals(0, sketch.getCount());
+        assertEquals(0, sketch.getMedian());
+        assertEquals(0, sketch.getP99());
+    }
+
+    @Test
+    public void interpolatesExactQuantilesOfFewSamples() {
+
+        PhaseSketch sketch = new PhaseSketch();
+        sketch.add(40);
+        sketch.add(10);
+        sketch.add(30);
+        sketch.add(20);
+        assertEquals(4, sketch.getCount());
+        assertEquals(25, sketch.getMedian());
+        assertEquals(37, sketch.getP90());
+    }
+
+    @Test
+    public void estimatesQuantilesOfLargeSamples() {
+
+        Random random = new Random(42);
+        PhaseSketch sketch = new PhaseSketch();
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) (1000 * Math.exp(random.nextGaussian()));
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, sketch.getCount());
+        assertWithin(values[values.length / 2], sketch.getMedian(), 0.02);
+        assertWithin(values[values.length * 9 / 10], sketch.getP90(), 0.02);
+        assertWithin(values[values.length * 99 / 100], sketch.getP99(), 0.05);
+    }
+
+    private static void assertWithin(long expected, long actual, double tolerance) {
+        assertEquals(expected, actual, expected * tolerance);
+    }
+}
@@ -0,0 +1,119 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import fr.insalyon.creatis.gasw.plugin.listener.healing.simulation.VirtualClock;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PhaseStatisticsStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void storesTheMeasuredCountsOnly() throws IOException {
+
+        PhaseStatisticsStore store = new PhaseStatisticsStore(directory);
+        PhaseStatistics[] phases = sketches();
+        phases[3].addPrior(10, 1000, 2000, 4000);
+        phases[3].add(1000);
+        phases[3].add(1200);
+        store.save("command", new long[]{0, 0, 0, 2}, phases);
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(directory.resolve("command.properties"))) {
+            properties.load(reader);
+        }
+        assertEquals("0", properties.getProperty("setup.count"));
+        assertEquals("2", properties.getProperty("output.count"));
+    }
+
+    @Test
+    public void preloadsOnlyThePhasesWithSamples() throws IOException {
+
+        PhaseStatisticsStore store = new PhaseStatisticsStore(directory);
+        PhaseStatistics[] saved = sketches();
+        for (PhaseStatistics phase : saved) {
+            phase.add(1000);
+        }
+        store.save("command", new long[]{0, 1, 1, 1}, saved);
+
+        PhaseStatistics[] loaded = sketches();
+        assertTrue(store.preload("command", 20, loaded));
+        assertEquals(0, loaded[0].getCount());
+        assertEquals(20, loaded[3].getCount());
+        assertEquals(1000, loaded[3].getMedian(), 10);
+        assertFalse(store.preload("other", 20, sketches()));
+    }
+
+    @Test
+    public void preloadsTheSavedQuantiles() throws IOException {
+
+        PhaseStatisticsStore store = new PhaseStatisticsStore(directory);
+        PhaseStatistics[] saved = sketches();
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            saved[2].add(Math.round(Math.exp(7 + random.nextGaussian())));
+        }
+        store.save("command", new long[]{0, 0, 10000, 0}, saved);
+
+        VirtualClock clock = new VirtualClock(0);
+        for (int weight : new int[]{10, 20, 100}) {
+            PhaseStatistics sketch = new PhaseSketch();
+            PhaseStatistics window = new WindowedPhaseStatistics(100, 0, 0, clock);
+            assertTrue(store.preload("command", weight, null, null, sketch, null));
+            assertTrue(store.preload("command", weight, null, null, window, null));
+            for (PhaseStatistics loaded : new PhaseStatistics[]{sketch, window}) {
+                assertEquals(weight, loaded.getCount());
+                assertEquals(saved[2].getMedian(), loaded.getMedian(), saved[2].getMedian() * 0.02);
+                assertEquals(saved[2].getP90(), loaded.getP90(), saved[2].getP90() * 0.02);
+                assertEquals(saved[2].getP99(), loaded.getP99(), saved[2].getP99() * 0.02);
+            }
+        }
+    }
+
+    private static PhaseStatistics[] sketches() {
+        return new PhaseStatistics[]{new PhaseSketch(), new PhaseSketch(), new PhaseSketch(), new PhaseSketch()};
+    }
+}
@@ -0,0 +1,100 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import fr.insalyon.creatis.gasw.plugin.listener.healing.simulation.VirtualClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ReplicaBudgetTest {
+
+    private VirtualClock clock;
+
+    @BeforeEach
+    public void setUp() {
+
+        clock = new VirtualClock(1000000);
+    }
+
+    @Test
+    public void isUnlimitedWithoutCapacity() {
+
+        ReplicaBudget budget = new ReplicaBudget(0, 1, 60000, clock);
+        assertEquals(3, budget.acquire("a", new double[]{3, 2, 1}));
+        assertEquals(Integer.MAX_VALUE, budget.getAvailable());
+    }
+
+    @Test
+    public void refillsAtTheRate() {
+
+        ReplicaBudget budget = new ReplicaBudget(2, 6, 60000, clock);
+        assertEquals(2, budget.acquire("a", new double[]{3, 2, 1}));
+        assertEquals(0, budget.acquire("a", new double[]{1}));
+        clock.advance(10000);
+        assertEquals(1, budget.acquire("a", new double[]{1}));
+        clock.advance(60000);
+        assertEquals(2, budget.getAvailable());
+    }
+
+    @Test
+    public void keepsTheTokensForTheMostBlockedCandidates() {
+
+        ReplicaBudget budget = new ReplicaBudget(2, 6, 60000, clock);
+        budget.acquire("a", new double[]{1, 1});
+        assertEquals(0, budget.acquire("b", new double[]{5, 4}));
+        // the token goes to the candidates of b, which are more blocked
+        clock.advance(10000);
+        assertEquals(0, budget.acquire("a", new double[]{1.5}));
+        clock.advance(10000);
+        assertEquals(2, budget.acquire("b", new double[]{5, 4}));
+        assertEquals(0, budget.getAvailable());
+    }
+
+    @Test
+    public void forgetsTheExpiredAndWithdrawnOffers() {
+
+        ReplicaBudget budget = new ReplicaBudget(1, 6, 60000, clock);
+        budget.acquire("a", new double[]{1});
+        assertEquals(0, budget.acquire("b", new double[]{5, 5}));
+        clock.advance(10000);
+        budget.withdraw("b");
+        assertEquals(1, budget.acquire("a", new double[]{1}));
+
+        clock.advance(10000);
+        budget.acquire("b", new double[]{5});
+        clock.advance(61000);
+        assertEquals(1, budget.acquire("a", new double[]{1}));
+    }
+}
@@ -0,0 +1,68 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class SequentialErrorTestTest {
+
+    @Test
+    public void concludesOnConsecutiveFailures() {
+
+        SequentialErrorTest test = new SequentialErrorTest(20, 60, 0.001);
+        // each failure adds log(3), the threshold is log(1000)
+        assertFalse(test.isFailing(6, 0));
+        assertTrue(test.isFailing(7, 0));
+    }
+
+    @Test
+    public void successesOffsetFailures() {
+
+        SequentialErrorTest test = new SequentialErrorTest(20, 60, 0.001);
+        assertFalse(test.isFailing(7, 3));
+        assertTrue(test.isFailing(20, 10));
+        assertFalse(test.isFailing(20, 40));
+    }
+
+    @Test
+    public void rejectsInvalidSettings() {
+
+        assertThrows(IllegalArgumentException.class, () -> new SequentialErrorTest(60, 20, 0.001));
+        assertThrows(IllegalArgumentException.class, () -> new SequentialErrorTest(0, 60, 0.001));
+        assertThrows(IllegalArgumentException.class, () -> new SequentialErrorTest(20, 60, 1));
+    }
+}
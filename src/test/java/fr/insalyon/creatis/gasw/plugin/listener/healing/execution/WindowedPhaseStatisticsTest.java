@@ -0,0 +1,101 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.execution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import fr.insalyon.creatis.gasw.plugin.listener.healing.simulation.VirtualClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class WindowedPhaseStatisticsTest {
+
+    private VirtualClock clock;
+
+    @BeforeEach
+    public void setUp() {
+
+        clock = new VirtualClock(1000000);
+    }
+
+    @Test
+    public void keepsTheLastSamples() {
+
+        WindowedPhaseStatistics statistics = new WindowedPhaseStatistics(3, 0, 0, clock);
+        for (long value = 10; value <= 50; value += 10) {
+            statistics.add(value);
+        }
+        assertEquals(3, statistics.getCount());
+        assertEquals(40, statistics.getMedian());
+    }
+
+    @Test
+    public void countsOnlyTheSamplesInTheWindow() {
+
+        WindowedPhaseStatistics statistics = new WindowedPhaseStatistics(100, 60000, 0, clock);
+        statistics.add(1000);
+        statistics.add(1000);
+        statistics.add(1000);
+        clock.advance(50000);
+        statistics.add(10);
+        statistics.add(20);
+        assertEquals(5, statistics.getCount());
+
+        clock.advance(20000);
+        assertEquals(2, statistics.getCount());
+        assertEquals(10, statistics.getMedian());
+    }
+
+    @Test
+    public void fallsBackToAllSamplesWhenNoneIsInTheWindow() {
+
+        WindowedPhaseStatistics statistics = new WindowedPhaseStatistics(100, 60000, 0, clock);
+        statistics.add(10);
+        statistics.add(30);
+        clock.advance(120000);
+        assertEquals(2, statistics.getCount());
+        assertEquals(10, statistics.getMedian());
+    }
+
+    @Test
+    public void weighsRecentSamplesMore() {
+
+        WindowedPhaseStatistics statistics = new WindowedPhaseStatistics(100, 0, 10000, clock);
+        statistics.add(1000);
+        statistics.add(1000);
+        clock.advance(30000);
+        statistics.add(10);
+        assertEquals(3, statistics.getCount());
+        assertEquals(10, statistics.getMedian());
+    }
+}
@@ -0,0 +1,89 @@
+/* Copyright CNRS-CREATIS
+ *
+ * Rafael Ferreira da Silva
+ * rafael.silva@creatis.insa-lyon.fr
+ * http://www.rafaelsilva.com
+ *
+ * This software is governed by the CeCILL  license under French law and
+ * abiding by the rules of distribution of free software.  You can  use,
+ * modify and/ or redistribute the software under the terms of the CeCILL
+ * license as circulated by CEA, CNRS and INRIA at the following URL
+ * "http://www.cecill.info".
+ *
+ * As a counterpart to the access to the source code and  rights to copy,
+ * modify and redistribute granted by the license, users are provided only
+ * with a limited warranty  and the software's author,  the holder of the
+ * economic rights,  and the successive licensors  have only  limited
+ * liability.
+ *
+ * In this respect, the user's attention is drawn to the risks associated
+ * with loading,  using,  modifying and/or developing or reproducing the
+ * software by the user in light of its specific status of free software,
+ * that may mean  that it is complicated to manipulate,  and  that  also
+ * therefore means  that it is reserved for developers  and  experienced
+ * professionals having in-depth computer knowledge. Users are therefore
+ * encouraged to load and test the software's suitability as regards their
+ * requirements in conditions enabling the security of their systems and/or
+ * data to be ensured and,  more generally, to use and operate it in the
+ * same conditions as regards security.
+ *
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL license and that you accept its terms.
+ */
+package fr.insalyon.creatis.gasw.plugin.listener.healing.journal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import fr.insalyon.creatis.gasw.execution.GaswMinorStatus;
+import fr.insalyon.creatis.gasw.execution.GaswStatus;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class NdjsonDecisionJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void escapesTheControlCharacters() throws IOException {
+
+        Path file = directory.resolve("journal.ndjson");
+        NdjsonDecisionJournal journal = new NdjsonDecisionJournal(file, 16, true, Clock.systemUTC());
+        journal.kill("com\"mand", 1, "job\n\u001f\\", GaswStatus.KILL);
+        journal.close();
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("\"command\":\"com\\\"mand\""));
+        assertTrue(lines.get(0).contains("\"job\":\"job\\u000a\\u001f\\\\\""));
+    }
+
+    @Test
+    public void keepsTheDecisionsWhenTheEventsFillTheBuffer() throws Exception {
+
+        Path file = directory.resolve("journal.ndjson");
+        NdjsonDecisionJournal journal = new NdjsonDecisionJournal(file, 8, true, Clock.systemUTC());
+        Thread events = new Thread(() -> {
+            for (int i = 0; i < 100000; i++) {
+                journal.minorStatus("command", "job-" + i, GaswMinorStatus.Started, i);
+            }
+        });
+        events.start();
+        for (int i = 0; i < 200; i++) {
+            journal.kill("command", i, "job-" + i, GaswStatus.KILL);
+        }
+        events.join();
+        journal.close();
+
+        long kills = Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                .filter(line -> line.contains("\"type\":\"KILL\"")).count();
+        assertEquals(200, kills);
+    }
+}